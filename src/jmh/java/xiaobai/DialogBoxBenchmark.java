@@ -0,0 +1,76 @@
+package xiaobai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Measures sanitizing a reply of each length, and building or refilling the dialog box that shows it.
+ * The plain reply is a listing as the window gets it; the decorated one adds ANSI colour codes,
+ * box-drawing borders, CRLF line ends and non-ASCII text, so every branch of the sanitizer runs.
+ * The dialog box benchmarks start the JavaFX toolkit, so they need a display.
+ * Boxes are never shown, so they are built on the benchmark thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DialogBoxBenchmark {
+    @Param({"10", "100"})
+    public int lines;
+
+    private String plain;
+    private String decorated;
+    private Image picture;
+    private DialogBox box;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        plain = "Here are the tasks in your list:\n" + new TaskList(Fixtures.tasks(lines)).renderList();
+        StringBuilder sb = new StringBuilder("\u001B[1;36m┌──────────┐\u001B[0m\r\n");
+        for (String line : plain.split("\n")) {
+            sb.append("│ \u001B[32m").append(line).append("\u001B[0m (＾▽＾) ✔\r\n");
+        }
+        decorated = sb.append("└──────────┘").toString();
+
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException e) {
+            // already started by an earlier trial in this fork
+        }
+        picture = new WritableImage(80, 80);
+        box = new DialogBox();
+    }
+
+    @Benchmark
+    public String sanitizePlain() {
+        return DialogBox.sanitize(plain);
+    }
+
+    @Benchmark
+    public String sanitizeDecorated() {
+        return DialogBox.sanitize(decorated);
+    }
+
+    @Benchmark
+    public DialogBox newDialogBox() {
+        return DialogBox.getBotDialog(plain, picture);
+    }
+
+    @Benchmark
+    public DialogBox reuseDialogBox() {
+        box.show(plain, picture, true);
+        return box;
+    }
+}
@@ -0,0 +1,110 @@
+package xiaobai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic task lists and data files shared by the benchmarks.
+ */
+final class Fixtures {
+    static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 9, 0);
+    static final int DAYS = 730;
+
+    private static final String[] WORDS = {
+        "read", "book", "return", "project", "meeting", "submit", "report", "buy", "milk",
+        "call", "mum", "lecture", "tutorial", "quiz", "lab", "gym", "dinner", "review", "draft", "email"
+    };
+
+    private Fixtures() {}
+
+    /**
+     * Returns a list of todos, deadlines and events in equal parts, with three-word descriptions
+     * and dates spread over {@link #DAYS} days from {@link #START}. About a third are marked as done.
+     *
+     * @param size Number of tasks.
+     * @return New list of tasks.
+     */
+    static List<Task> tasks(int size) {
+        Random random = new Random(size);
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String desc = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + i;
+            LocalDateTime at = START.plusDays(random.nextInt(DAYS)).plusHours(random.nextInt(10));
+            Task t;
+            switch (i % 3) {
+            case 0:
+                t = new Todo(desc);
+                break;
+            case 1:
+                t = new Deadline(desc, at);
+                break;
+            default:
+                t = new Event(desc, at, at.plusDays(random.nextInt(3)).plusHours(2));
+                break;
+            }
+            if (random.nextInt(3) == 0) {
+                t.markAsDone();
+            }
+            tasks.add(t);
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes a data file of the given size and format in a new temporary directory.
+     *
+     * @param size Number of tasks.
+     * @param format Snapshot format.
+     * @return Path of the data file.
+     * @throws IOException If the directory cannot be created.
+     */
+    static Path dataFile(int size, Storage.Format format) throws IOException {
+        Path file = Files.createTempDirectory("xiaobai-jmh").resolve("xiaobai.txt");
+        Storage storage = new Storage(file, false);
+        storage.setFormat(format);
+        storage.save(new TaskList(tasks(size)).asList(), quietUi());
+        return file;
+    }
+
+    /**
+     * Deletes a directory created by {@link #dataFile(int, Storage.Format)}.
+     *
+     * @param file Data file inside the directory.
+     * @throws IOException If a file cannot be deleted.
+     */
+    static void delete(Path file) throws IOException {
+        try (Stream<Path> paths = Files.walk(file.getParent())) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /** Returns a UI that discards its output, so benchmarks measure the work and not the console. */
+    static Ui quietUi() {
+        return new Ui(new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return this;
+            }
+        });
+    }
+}
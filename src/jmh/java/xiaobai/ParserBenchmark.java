@@ -0,0 +1,53 @@
+package xiaobai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures parsing a mix of typical commands, and lenient date-time parsing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+    private static final String[] COMMANDS = {
+        "list",
+        "todo read book",
+        "deadline return book /by 2019-12-02 1800",
+        "event project meeting /from 2/12/2019 1400 /to 2/12/2019 1600",
+        "mark 2",
+        "unmark 1,3,5-9",
+        "delete #42",
+        "find book",
+        "on 2019-12-02",
+    };
+
+    private static final String[] DATE_TIMES = {
+        "2019-12-02 1800",
+        "2/12/2019 18:00",
+        "2019-12-02",
+        "today 0900",
+        "tmr 14:30",
+    };
+
+    @Benchmark
+    public void parse(Blackhole bh) throws XiaoBaiException {
+        for (String command : COMMANDS) {
+            bh.consume(Parser.parse(command));
+        }
+    }
+
+    @Benchmark
+    public void parseDateTimeLenient(Blackhole bh) throws XiaoBaiException {
+        for (String dateTime : DATE_TIMES) {
+            bh.consume(DateTimeUtil.parseDateTimeLenient(dateTime));
+        }
+    }
+}
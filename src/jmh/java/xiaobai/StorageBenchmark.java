@@ -0,0 +1,61 @@
+package xiaobai;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures loading and saving a data file of each size and format.
+ * The fixture file is generated in a temporary directory per trial and deleted afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"TEXT", "BINARY"})
+    public Storage.Format format;
+
+    private Path file;
+    private Storage storage;
+    private List<Task> tasks;
+    private Ui ui;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Fixtures.dataFile(size, format);
+        storage = new Storage(file, false);
+        storage.setFormat(format);
+        tasks = new TaskList(Fixtures.tasks(size)).asList();
+        ui = Fixtures.quietUi();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.close();
+        Fixtures.delete(file);
+    }
+
+    @Benchmark
+    public List<Task> load() {
+        return storage.load(ui);
+    }
+
+    @Benchmark
+    public void save() {
+        storage.save(tasks, ui);
+    }
+}
@@ -0,0 +1,52 @@
+package xiaobai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures rendering and querying a task list of each size.
+ * The list and its indexes are built once per trial; the first find and on build the indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskListBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private TaskList tasks;
+    private Ui ui;
+    private Storage storage;
+
+    @Setup
+    public void setUp() throws XiaoBaiException {
+        tasks = new TaskList(Fixtures.tasks(size));
+        ui = Fixtures.quietUi();
+        storage = new Storage(); // find and on never write
+        new FindCommand("warm").execute(tasks, ui, storage);
+        new OnCommand("2024-01-01").execute(tasks, ui, storage);
+    }
+
+    @Benchmark
+    public String renderList() {
+        return tasks.renderList();
+    }
+
+    @Benchmark
+    public void findCommand() throws XiaoBaiException {
+        new FindCommand("book return").execute(tasks, ui, storage);
+    }
+
+    @Benchmark
+    public void onCommand() throws XiaoBaiException {
+        new OnCommand("2024-06-15").execute(tasks, ui, storage);
+    }
+}
@@ -12,7 +12,7 @@ public class AddDeadlineCommand extends Command {
     public AddDeadlineCommand(String desc, String by) {
         assert desc != null : "Description must not be null";
         assert by != null : "Deadline must not be null";
-        this.desc = desc; this.by = by;
+        this.desc = DescriptionPool.intern(desc.trim()); this.by = by;
     }
 
     /**
@@ -36,8 +36,8 @@ public class AddDeadlineCommand extends Command {
         assert t != null : "Created task must not be null";
         tasks.add(t);
         assert tasks.size() == oldSize + 1 : "Task list size should increase after add";
-        ui.printBoxed("Got it. I've added this task:\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
-        save(storage, tasks, ui);
+        ui.printBoxed("Got it. I've added this task (#" + t.getId() + "):\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
+        save(storage, tasks, ui, Storage.addEntry(t));
         assert tasks.size() > 0 : "After save, tasks should still be present";
     }
 }
@@ -14,7 +14,7 @@ public class AddEventCommand extends Command {
         assert desc != null : "Description must not be null";
         assert start != null : "Start time must not be null";
         assert end != null : "End time must not be null";
-        this.desc = desc; this.start = start; this.end = end;
+        this.desc = DescriptionPool.intern(desc.trim()); this.start = start; this.end = end;
     }
 
     /**
@@ -38,8 +38,8 @@ public class AddEventCommand extends Command {
         assert t != null : "Created task must not be null";
         tasks.add(t);
         assert tasks.size() == oldSize + 1 : "Task list size should increase after add";
-        ui.printBoxed("Got it. I've added this task:\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
-        save(storage, tasks, ui);
+        ui.printBoxed("Got it. I've added this task (#" + t.getId() + "):\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
+        save(storage, tasks, ui, Storage.addEntry(t));
         assert tasks.size() > 0 : "After save, tasks should still be present";
     }
 }
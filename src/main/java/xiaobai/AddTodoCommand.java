@@ -10,7 +10,7 @@ public class AddTodoCommand extends Command {
      */
     public AddTodoCommand(String desc) {
         assert desc != null : "Description must not be null";
-        this.desc = desc;
+        this.desc = DescriptionPool.intern(desc.trim());
     }
 
     /**
@@ -34,8 +34,8 @@ public class AddTodoCommand extends Command {
         assert t != null : "Created task must not be null";
         tasks.add(t);
         assert tasks.size() == oldSize + 1 : "Task list size should increase after add";
-        ui.printBoxed("Got it. I've added this task:\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
-        save(storage, tasks, ui);
+        ui.printBoxed("Got it. I've added this task (#" + t.getId() + "):\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
+        save(storage, tasks, ui, Storage.addEntry(t));
         assert tasks.size() > 0 : "After save, tasks should still be present";
     }
 }
@@ -0,0 +1,189 @@
+package xiaobai;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of tasks used by {@link Storage}.
+ * A file starts with the magic bytes "XBAI", a format version, the journal sequence number
+ * the snapshot covers, the task count and (from version 3) the highest task ID handed out so far,
+ * which may belong to a deleted task. Each task is then written as a type byte,
+ * a flags byte, the task ID (from version 2), a length-prefixed UTF-8 description and,
+ * for deadlines and events, their date-times as minutes since the epoch.
+ */
+final class BinaryFormat {
+    static final byte[] MAGIC = { 'X', 'B', 'A', 'I' };
+    static final short VERSION = 3;
+    static final short VERSION_WITHOUT_LAST_ID = 2;
+    static final short VERSION_WITHOUT_IDS = 1;
+
+    static final byte TYPE_TODO = 'T';
+    static final byte TYPE_DEADLINE = 'D';
+    static final byte TYPE_EVENT = 'E';
+    static final byte FLAG_DONE = 1;
+
+    private BinaryFormat() {}
+
+    /**
+     * Returns true if the file starts with the binary magic bytes.
+     *
+     * @param path File to check.
+     * @return Whether the file is in binary format.
+     * @throws IOException If the file cannot be read.
+     */
+    static boolean isBinary(Path path) throws IOException {
+        assert path != null : "Path must not be null";
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            return Arrays.equals(head, MAGIC);
+        }
+    }
+
+    static void writeHeader(DataOutputStream out, long seq, int count, long lastId) throws IOException {
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(seq);
+        out.writeInt(count);
+        out.writeLong(lastId);
+    }
+
+    /** Returns whether files of the given version can be read. */
+    static boolean isSupported(short version) {
+        return version >= VERSION_WITHOUT_IDS && version <= VERSION;
+    }
+
+    static void writeTask(DataOutputStream out, Task t) throws IOException {
+        assert t != null : "Task must not be null";
+        byte type;
+        if (t instanceof Deadline) {
+            type = TYPE_DEADLINE;
+        } else if (t instanceof Event) {
+            type = TYPE_EVENT;
+        } else {
+            type = TYPE_TODO;
+        }
+        out.writeByte(type);
+        out.writeByte(t.isDone ? FLAG_DONE : 0);
+        out.writeLong(t.getId());
+        byte[] desc = t.description.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(desc.length);
+        out.write(desc);
+        if (type == TYPE_DEADLINE) {
+            out.writeLong(toEpochMinute(((Deadline) t).getBy()));
+        } else if (type == TYPE_EVENT) {
+            Event e = (Event) t;
+            out.writeLong(toEpochMinute(e.getStart()));
+            out.writeLong(toEpochMinute(e.getEnd()));
+        }
+    }
+
+    static long toEpochMinute(LocalDateTime dt) {
+        assert dt != null : "DateTime must not be null";
+        return Math.floorDiv(dt.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static LocalDateTime fromEpochMinute(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads tasks from a binary stream, reusing one scratch buffer for descriptions.
+     */
+    static final class Reader {
+        private final DataInputStream in;
+        private byte[] scratch = new byte[256];
+        private long seq;
+        private int count;
+        private long lastId;
+        private boolean hasIds;
+        private final DescriptionPool.Batch descriptions = new DescriptionPool.Batch();
+
+        Reader(DataInputStream in) {
+            assert in != null : "Input stream must not be null";
+            this.in = in;
+        }
+
+        /**
+         * Reads and validates the file header.
+         *
+         * @throws IOException If the magic bytes or version do not match.
+         */
+        void readHeader() throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a XiaoBai binary file");
+            }
+            short version = in.readShort();
+            if (!isSupported(version)) {
+                throw new IOException("Unsupported binary format version " + version);
+            }
+            hasIds = version >= VERSION_WITHOUT_LAST_ID;
+            seq = in.readLong();
+            count = in.readInt();
+            lastId = version >= VERSION ? in.readLong() : 0;
+        }
+
+        long getSeq() {
+            return seq;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /** Returns the highest task ID handed out when the file was written, or 0 if the file predates it. */
+        long getLastId() {
+            return lastId;
+        }
+
+        /**
+         * Reads the next task.
+         *
+         * @return The task.
+         * @throws EOFException If the file ends in the middle of a record.
+         * @throws IOException If reading fails or the record is corrupted.
+         */
+        Task readTask() throws IOException {
+            byte type = in.readByte();
+            boolean isDone = (in.readByte() & FLAG_DONE) != 0;
+            long id = hasIds ? in.readLong() : 0;
+            int len = in.readInt();
+            if (len < 0) {
+                throw new IOException("Negative description length");
+            }
+            if (len > scratch.length) {
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            in.readFully(scratch, 0, len);
+            String desc = descriptions.intern(new String(scratch, 0, len, StandardCharsets.UTF_8));
+
+            Task t;
+            switch (type) {
+            case TYPE_TODO:
+                t = new Todo(desc);
+                break;
+            case TYPE_DEADLINE:
+                t = new Deadline(desc, fromEpochMinute(in.readLong()));
+                break;
+            case TYPE_EVENT:
+                t = new Event(desc, fromEpochMinute(in.readLong()), fromEpochMinute(in.readLong()));
+                break;
+            default:
+                throw new IOException("Unknown task type " + type);
+            }
+            if (isDone) t.markAsDone();
+            if (id > 0) t.setId(id);
+            return t;
+        }
+    }
+}
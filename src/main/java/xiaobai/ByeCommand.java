@@ -7,7 +7,7 @@ public class ByeCommand extends Command {
     }
 
     /**
-     * Prints a goodbye message to the user.
+     * Writes any deferred changes to disk and prints a goodbye message to the user.
      *
      * @param tasks Task list.
      * @param ui User interface.
@@ -16,6 +16,9 @@ public class ByeCommand extends Command {
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) {
         assert ui != null : "Ui must not be null";
+        if (storage != null) {
+            storage.flush(ui);
+        }
         ui.printBoxed("(¦3[▓▓] Bye! Hope to see you again soon!");
     }
 }
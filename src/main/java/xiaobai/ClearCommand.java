@@ -15,10 +15,10 @@ public class ClearCommand extends Command {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         assert storage != null : "Storage must not be null";
-        tasks.asList().clear();
+        tasks.clear();
         assert tasks.size() == 0 : "Task list should be empty after clear";
         ui.printBoxed("Okay! I've cleared all tasks.\nNow you have 0 tasks in the list.");
-        save(storage, tasks, ui);
+        save(storage, tasks, ui, Storage.clearEntry());
         assert tasks.size() == 0 : "Tasks should remain empty after save";
     }
 }
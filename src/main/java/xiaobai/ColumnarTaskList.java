@@ -0,0 +1,380 @@
+package xiaobai;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A list of tasks stored column by column in primitive arrays, for large lists that are mostly at rest.
+ * Each row is a type byte, a done bit, an ID, up to two date-times in minutes since the epoch,
+ * and a reference into a pool of UTF-8 descriptions in which equal descriptions are stored once.
+ * Tasks are built from the columns whenever they are read, and no task object is kept,
+ * so a change to a task only sticks once it is written back with {@link #set(int, Task)}.
+ * The pool counts the rows that use each description, and is compacted once fewer than half
+ * of its descriptions are still used, so removing or changing tasks gives their text back.
+ */
+class ColumnarTaskList extends AbstractList<Task> {
+    private static final int MIN_CAPACITY = 16;
+
+    private byte[] types = new byte[MIN_CAPACITY];
+    private final BitSet done = new BitSet();
+    private long[] ids = new long[MIN_CAPACITY];
+    private long[] firstTimes = new long[MIN_CAPACITY]; // deadline due time or event start
+    private long[] secondTimes = new long[MIN_CAPACITY]; // event end
+    private int[] descriptions = new int[MIN_CAPACITY];
+    private int size;
+
+    // Description pool: descriptions[row] is an index into descOffsets, whose entries point into text.
+    private byte[] text = new byte[1024];
+    private int textLength;
+    private int[] descOffsets = new int[MIN_CAPACITY + 1];
+    private int descCount;
+    private int[] refCounts = new int[MIN_CAPACITY + 1]; // rows using each description
+    private int liveCount; // descriptions used by at least one row
+    private int[] descTable = new int[MIN_CAPACITY * 2]; // open addressing, description index + 1, 0 if empty
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index);
+        return decode(index);
+    }
+
+    /**
+     * Replaces the task at the given index by writing it to the columns.
+     */
+    @Override
+    public Task set(int index, Task t) {
+        assert t != null : "Task must not be null";
+        Task old = get(index);
+        int oldDesc = descriptions[index];
+        encode(index, t);
+        release(oldDesc);
+        compactPoolIfSparse();
+        return old;
+    }
+
+    /** Returns the ID of the task at the given index without building the task. */
+    long idAt(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * Appends a task. Only its columns are kept; reading it back builds a new object.
+     */
+    @Override
+    public boolean add(Task t) {
+        assert t != null : "Task must not be null";
+        if (size == types.length) {
+            grow();
+        }
+        encode(size, t);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts a task at the given position.
+     * Appending is O(1) amortized; inserting elsewhere shifts every column and costs O(n).
+     */
+    @Override
+    public void add(int index, Task t) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == types.length) {
+            grow();
+        }
+        for (int i = size; i > index; i--) {
+            moveRow(i - 1, i);
+        }
+        encode(index, t);
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Removes the task at the given position.
+     * Every later row is shifted down, so this costs O(n); {@link #removePositions(int[])}
+     * removes many rows for the price of one.
+     */
+    @Override
+    public Task remove(int index) {
+        Task t = get(index);
+        release(descriptions[index]);
+        for (int i = index + 1; i < size; i++) {
+            moveRow(i, i - 1);
+        }
+        size--;
+        clearRow(size);
+        modCount++;
+        compactPoolIfSparse();
+        return t;
+    }
+
+    /**
+     * Removes the rows at the given positions in one pass.
+     *
+     * @param sorted Distinct 0-based positions in increasing order.
+     */
+    void removePositions(int[] sorted) {
+        int next = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < sorted.length && sorted[next] == i) {
+                release(descriptions[i]);
+                next++;
+                continue;
+            }
+            if (kept != i) {
+                moveRow(i, kept);
+            }
+            kept++;
+        }
+        for (int i = kept; i < size; i++) {
+            clearRow(i);
+        }
+        size = kept;
+        modCount++;
+        compactPoolIfSparse();
+    }
+
+    @Override
+    public void clear() {
+        done.clear();
+        size = 0;
+        textLength = 0;
+        Arrays.fill(refCounts, 0, descCount, 0);
+        descCount = 0;
+        liveCount = 0;
+        Arrays.fill(descTable, 0);
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Returns how many descriptions the pool holds, including ones no row uses any more. */
+    int pooledDescriptions() {
+        return descCount;
+    }
+
+    /**
+     * Keeps the IDs if they increase along the list, otherwise numbers the rows 1 to n.
+     *
+     * @return Whether the rows were numbered.
+     */
+    boolean assignIds() {
+        boolean isOrdered = true;
+        for (int i = 0; i < size && isOrdered; i++) {
+            isOrdered = ids[i] > (i == 0 ? 0 : ids[i - 1]);
+        }
+        if (!isOrdered) {
+            for (int i = 0; i < size; i++) {
+                ids[i] = i + 1;
+            }
+        }
+        return !isOrdered;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        firstTimes = Arrays.copyOf(firstTimes, capacity);
+        secondTimes = Arrays.copyOf(secondTimes, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    private void moveRow(int from, int to) {
+        types[to] = types[from];
+        done.set(to, done.get(from));
+        ids[to] = ids[from];
+        firstTimes[to] = firstTimes[from];
+        secondTimes[to] = secondTimes[from];
+        descriptions[to] = descriptions[from];
+    }
+
+    private void clearRow(int row) {
+        done.clear(row);
+    }
+
+    private void encode(int row, Task t) {
+        if (t instanceof Deadline) {
+            types[row] = BinaryFormat.TYPE_DEADLINE;
+            firstTimes[row] = BinaryFormat.toEpochMinute(((Deadline) t).getBy());
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            types[row] = BinaryFormat.TYPE_EVENT;
+            firstTimes[row] = BinaryFormat.toEpochMinute(e.getStart());
+            secondTimes[row] = BinaryFormat.toEpochMinute(e.getEnd());
+        } else {
+            types[row] = BinaryFormat.TYPE_TODO;
+        }
+        done.set(row, t.isDone);
+        ids[row] = t.getId();
+        descriptions[row] = intern(t.description);
+    }
+
+    private Task decode(int row) {
+        String desc = description(descriptions[row]);
+        Task t;
+        switch (types[row]) {
+        case BinaryFormat.TYPE_DEADLINE:
+            t = new Deadline(desc, BinaryFormat.fromEpochMinute(firstTimes[row]));
+            break;
+        case BinaryFormat.TYPE_EVENT:
+            t = new Event(desc, BinaryFormat.fromEpochMinute(firstTimes[row]),
+                    BinaryFormat.fromEpochMinute(secondTimes[row]));
+            break;
+        default:
+            t = new Todo(desc);
+            break;
+        }
+        if (done.get(row)) t.markAsDone();
+        if (ids[row] > 0) t.setId(ids[row]);
+        return t;
+    }
+
+    // Description pool:
+
+    private String description(int d) {
+        return new String(text, descOffsets[d], descOffsets[d + 1] - descOffsets[d], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index of the description in the pool, adding it if it is not there yet,
+     * and counts one more row using it.
+     */
+    private int intern(String s) {
+        int d = find(s);
+        if (refCounts[d]++ == 0) {
+            liveCount++;
+        }
+        return d;
+    }
+
+    /** Counts one row fewer using the description. The pool is not compacted here. */
+    private void release(int d) {
+        assert refCounts[d] > 0 : "Description must be in use";
+        if (--refCounts[d] == 0) {
+            liveCount--;
+        }
+    }
+
+    private int find(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int hash = Arrays.hashCode(bytes);
+        int mask = descTable.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = descTable[slot];
+            if (entry == 0) {
+                int d = addDescription(bytes);
+                descTable[slot] = d + 1;
+                if (descCount * 2 > descTable.length) {
+                    rehash();
+                }
+                return d;
+            }
+            int d = entry - 1;
+            int start = descOffsets[d];
+            if (Arrays.equals(text, start, descOffsets[d + 1], bytes, 0, bytes.length)) {
+                return d;
+            }
+        }
+    }
+
+    private int addDescription(byte[] bytes) {
+        if (textLength + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, text, textLength, bytes.length);
+        textLength += bytes.length;
+        if (descCount + 2 > descOffsets.length) {
+            descOffsets = Arrays.copyOf(descOffsets, descOffsets.length * 2);
+            refCounts = Arrays.copyOf(refCounts, descOffsets.length);
+        }
+        int d = descCount++;
+        descOffsets[d + 1] = textLength;
+        return d;
+    }
+
+    private void rehash() {
+        descTable = new int[descTable.length * 2];
+        fillTable();
+    }
+
+    private void fillTable() {
+        int mask = descTable.length - 1;
+        for (int d = 0; d < descCount; d++) {
+            int start = descOffsets[d];
+            int hash = hashRange(text, start, descOffsets[d + 1]);
+            int slot = mix(hash) & mask;
+            while (descTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            descTable[slot] = d + 1;
+        }
+    }
+
+    /**
+     * Drops the descriptions no row uses once they are more than half of the pool.
+     * Live descriptions keep their order, so text and offsets are moved down in place,
+     * and each row is pointed at the new index of its description. A compaction only
+     * follows as many releases as it leaves descriptions, so its cost is amortized.
+     */
+    private void compactPoolIfSparse() {
+        if (descCount < MIN_CAPACITY || liveCount * 2 >= descCount) {
+            return;
+        }
+        int[] remap = new int[descCount];
+        int kept = 0;
+        int length = 0;
+        for (int d = 0; d < descCount; d++) {
+            int start = descOffsets[d];
+            int end = descOffsets[d + 1];
+            if (refCounts[d] == 0) {
+                continue;
+            }
+            System.arraycopy(text, start, text, length, end - start);
+            length += end - start;
+            refCounts[kept] = refCounts[d];
+            remap[d] = kept++;
+            descOffsets[kept] = length;
+        }
+        Arrays.fill(refCounts, kept, descCount, 0);
+        for (int row = 0; row < size; row++) {
+            descriptions[row] = remap[descriptions[row]];
+        }
+        descCount = kept;
+        textLength = length;
+        if (text.length > 1024 && textLength < text.length / 4) {
+            text = Arrays.copyOf(text, Math.max(1024, textLength * 2));
+        }
+        Arrays.fill(descTable, 0);
+        fillTable();
+    }
+
+    /** Same hash as {@link Arrays#hashCode(byte[])} over text[from, to). */
+    private static int hashRange(byte[] a, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + a[i];
+        }
+        return h;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -5,13 +5,37 @@ public abstract class Command {
         return false;
     }
 
+    /**
+     * Returns whether the command only reads the task list.
+     * Read-only commands may run at the same time as each other, but never alongside one that changes the list.
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Returns the workspace the command switches to before it runs, or null if it stays in the current one.
+     */
+    public String getWorkspace() {
+        return null;
+    }
+
     public abstract void execute(TaskList tasks, Ui ui, Storage storage) throws XiaoBaiException;
 
     protected void save(Storage storage, TaskList tasks, Ui ui) {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         if (storage != null) {
-            storage.save(tasks.asList(), ui);
+            storage.save(tasks.writerView(), ui);
+        }
+    }
+
+    protected void save(Storage storage, TaskList tasks, Ui ui, String entry) {
+        assert tasks != null : "TaskList must not be null";
+        assert ui != null : "Ui must not be null";
+        assert entry != null : "Journal entry must not be null";
+        if (storage != null) {
+            storage.append(entry, tasks.writerView(), ui);
         }
     }
 }
@@ -0,0 +1,172 @@
+package xiaobai;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Date index over deadlines and events, used to answer "on <date>" queries.
+ * Deadlines are bucketed by due date in a sorted map; events live in an interval tree
+ * (a treap ordered by start day, augmented with the latest end day in each subtree).
+ * Like {@link KeywordIndex}, tasks are numbered in the order they were added and
+ * removed tasks leave a tombstone until the index is rebuilt.
+ */
+class DateIndex {
+    private final TreeMap<LocalDate, IntList> deadlines = new TreeMap<>();
+    private Node events;
+    private final IndexedIds ids = new IndexedIds();
+    private final Random random = new Random();
+
+    /**
+     * Indexes the task if it is a deadline or an event.
+     *
+     * @param t Task to index.
+     */
+    void add(Task t) {
+        assert t != null : "Task must not be null";
+        int ordinal = ids.add(t.getId());
+        if (t instanceof Deadline) {
+            LocalDate by = ((Deadline) t).getBy().toLocalDate();
+            deadlines.computeIfAbsent(by, k -> new IntList()).add(ordinal);
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            events = insert(events, new Node(e.getStart().toLocalDate().toEpochDay(),
+                    e.getEnd().toLocalDate().toEpochDay(), ordinal, random.nextInt()));
+        }
+    }
+
+    /**
+     * Removes the task with the given ID from the index.
+     *
+     * @param id ID of the task to remove.
+     */
+    void remove(long id) {
+        ids.remove(id);
+    }
+
+    /** Returns whether most indexed tasks were removed, so the index is worth rebuilding. */
+    boolean isMostlyRemoved() {
+        return ids.isMostlyRemoved();
+    }
+
+    void clear() {
+        deadlines.clear();
+        events = null;
+        ids.clear();
+    }
+
+    /**
+     * Returns the deadlines due on the date and the events spanning it, in list order.
+     *
+     * @param date Date to look up.
+     * @param byId Looks up a task by ID, returning null if it is gone.
+     * @return Matching tasks.
+     */
+    List<Task> on(LocalDate date, LongFunction<Task> byId) {
+        assert date != null : "Date must not be null";
+        IntList hits = new IntList();
+        IntList due = deadlines.get(date);
+        if (due != null) {
+            for (int i = 0; i < due.size(); i++) {
+                hits.add(due.get(i));
+            }
+        }
+        stab(events, date.toEpochDay(), hits);
+
+        int[] sorted = new int[hits.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = hits.get(i);
+        }
+        Arrays.sort(sorted);
+        List<Task> result = new ArrayList<>(sorted.length);
+        for (int ordinal : sorted) {
+            long id = ids.idAt(ordinal);
+            Task t = id > 0 ? byId.apply(id) : null;
+            if (t != null) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    // Interval tree:
+
+    private static final class Node {
+        private final long start;
+        private final long end;
+        private final int ordinal;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        Node(long start, long end, int ordinal, int priority) {
+            this.start = start;
+            this.end = end;
+            this.ordinal = ordinal;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        void update() {
+            maxEnd = end;
+            if (left != null) maxEnd = Math.max(maxEnd, left.maxEnd);
+            if (right != null) maxEnd = Math.max(maxEnd, right.maxEnd);
+        }
+    }
+
+    private static Node insert(Node root, Node n) {
+        if (root == null) {
+            return n;
+        }
+        if (n.start < root.start) {
+            root.left = insert(root.left, n);
+            if (root.left.priority > root.priority) {
+                root = rotateRight(root);
+            }
+        } else {
+            root.right = insert(root.right, n);
+            if (root.right.priority > root.priority) {
+                root = rotateLeft(root);
+            }
+        }
+        root.update();
+        return root;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        n.update();
+        l.update();
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        n.update();
+        r.update();
+        return r;
+    }
+
+    /** Collects every interval containing the day, pruning subtrees that end before it. */
+    private static void stab(Node n, long day, IntList hits) {
+        if (n == null || n.maxEnd < day) {
+            return;
+        }
+        stab(n.left, day, hits);
+        if (n.start <= day) {
+            if (n.end >= day) {
+                hits.add(n.ordinal);
+            }
+            stab(n.right, day, hits);
+        }
+    }
+}
@@ -4,16 +4,21 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.DayOfWeek;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.time.format.ResolverStyle;
-import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Utility class for parsing and formatting date and date-time values.
  * - Accepts both ISO (yyyy-MM-dd ...) and DMY (d/M/uuuu ...) inputs
  * - Accepts time-only inputs (HHmm, HH:mm) -> combined with today's date
  * - Provides standardized ISO and friendly display formatters
+ * Parsing is done by hand in a single scan, with the same rules as the strict
+ * uuuu-MM-dd, d/M/uuuu, HHmm and HH:mm patterns, so a failed attempt costs no exception.
  */
 public final class DateTimeUtil {
     private DateTimeUtil() {}
@@ -23,28 +28,22 @@ public final class DateTimeUtil {
     private static final DateTimeFormatter DISPLAY_DATE_TIME =
             DateTimeFormatter.ofPattern("MMM d uuuu HH:mm", Locale.ENGLISH);  // e.g., "Sep 5 2025 12:00"
 
-    // ISO
-    private static final DateTimeFormatter ISO_DATE =
-            DateTimeFormatter.ofPattern("uuuu-MM-dd").withResolverStyle(ResolverStyle.STRICT);
-    private static final DateTimeFormatter ISO_DATE_TIME_HHMM =
-            DateTimeFormatter.ofPattern("uuuu-MM-dd HHmm").withResolverStyle(ResolverStyle.STRICT);
     private static final DateTimeFormatter ISO_DATE_TIME_HH_COLON_MM =
             DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm").withResolverStyle(ResolverStyle.STRICT);
     private static final DateTimeFormatter ISO_T_DATE_TIME_HH_COLON_MM =
             DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm").withResolverStyle(ResolverStyle.STRICT);
 
-    private static final DateTimeFormatter DMY_DATE =
-            DateTimeFormatter.ofPattern("d/M/uuuu").withResolverStyle(ResolverStyle.STRICT);
-    private static final DateTimeFormatter DMY_DATE_TIME_HHMM =
-            DateTimeFormatter.ofPattern("d/M/uuuu HHmm").withResolverStyle(ResolverStyle.STRICT);
-    private static final DateTimeFormatter DMY_DATE_TIME_HH_COLON_MM =
-            DateTimeFormatter.ofPattern("d/M/uuuu HH:mm").withResolverStyle(ResolverStyle.STRICT);
-
-    private static final DateTimeFormatter TIME_HHMM =
-            DateTimeFormatter.ofPattern("HHmm").withResolverStyle(ResolverStyle.STRICT);
-    private static final DateTimeFormatter TIME_HH_COLON_MM =
-            DateTimeFormatter.ofPattern("HH:mm").withResolverStyle(ResolverStyle.STRICT);
+    private static final int PRINT_CACHE_SIZE = 1024;
+    private static final Map<LocalDateTime, String> PRINTED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDateTime, String> eldest) {
+            return size() > PRINT_CACHE_SIZE;
+        }
+    };
 
+    private static final int MAX_DIGITS = 19; // widest number a DateTimeFormatter field reads
+    private static final long MAX_YEAR = 999_999_999L;
+    private static final long DIGITS_CAP = 10_000_000_000L;
 
     /** Pretty-prints a LocalDate */
     public static String print(LocalDate date) {
@@ -54,13 +53,24 @@ public final class DateTimeUtil {
 
     /**
      * Pretty-prints a LocalDateTime.
+     * Recently printed date-times are kept in a small LRU cache shared by all tasks,
+     * since many tasks tend to share the same few dates.
      */
     public static String print(LocalDateTime dt) {
         assert dt != null : "DateTime must not be null";
-        if (dt.toLocalTime().equals(LocalTime.MIDNIGHT)) {
-            return DISPLAY_DATE.format(dt);
+        synchronized (PRINTED) {
+            String s = PRINTED.get(dt);
+            if (s != null) {
+                return s;
+            }
         }
-        return DISPLAY_DATE_TIME.format(dt);
+        String s = dt.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? DISPLAY_DATE.format(dt)
+                : DISPLAY_DATE_TIME.format(dt);
+        synchronized (PRINTED) {
+            PRINTED.put(dt, s);
+        }
+        return s;
     }
 
     /** Formats a LocalDateTime to an ISO-like string with minutes precision: "yyyy-MM-dd HH:mm". */
@@ -76,10 +86,16 @@ public final class DateTimeUtil {
     public static LocalDateTime fromIso(String s) {
         assert s != null : "ISO string must not be null";
         String t = normalizeSpaces(s);
-        try {
-            return LocalDateTime.parse(t, ISO_DATE_TIME_HH_COLON_MM);
-        } catch (DateTimeParseException ignored) { }
-        return LocalDateTime.parse(t, ISO_T_DATE_TIME_HH_COLON_MM);
+        Cursor c = new Cursor(t);
+        LocalDate date = c.isoDate();
+        if (date != null && c.has() && (c.peek() == ' ' || c.peek() == 'T')) {
+            c.pos++;
+            LocalTime time = c.timeHhColonMm();
+            if (time != null && !c.has()) {
+                return date.atTime(time);
+            }
+        }
+        return LocalDateTime.parse(t, ISO_T_DATE_TIME_HH_COLON_MM); // throws the usual parse error
     }
 
     /**
@@ -90,91 +106,244 @@ public final class DateTimeUtil {
     public static LocalDateTime parseDateTimeLenient(String input) throws XiaoBaiException {
         assert input != null : "Input string must not be null";
         String s = normalizeSpaces(input);
+        if (s.isEmpty()) {
+            throw new XiaoBaiException(buildHelpMessage(input));
+        }
 
-        LocalDateTime natural = tryParseNatural(s);
-        if (natural != null) return natural;
-
-        LocalDateTime tOnly = tryParseTimeOnly(s);
-        if (tOnly != null) return tOnly;
-
-        LocalDateTime isoDt = tryParseIsoDateTime(s);
-        if (isoDt != null) return isoDt;
+        if (Character.isLetter(s.charAt(0))) {
+            LocalDateTime natural = tryParseNatural(s);
+            if (natural != null) return natural;
+            throw new XiaoBaiException(buildHelpMessage(input)); // every numeric form starts with a digit or sign
+        }
 
-        LocalDateTime dmyDt = tryParseDmyDateTime(s);
-        if (dmyDt != null) return dmyDt;
+        LocalTime tOnly = parseTime(s, 0, s.length());
+        if (tOnly != null) return LocalDate.now().atTime(tOnly);
 
-        LocalDate dateOnly = tryParseDateOnly(s);
-        if (dateOnly != null) return dateOnly.atStartOfDay();
+        LocalDateTime dt = tryParseDateTime(s);
+        if (dt != null) return dt;
 
         throw new XiaoBaiException(buildHelpMessage(input));
     }
 
+    /**
+     * Parses a date given as yyyy-MM-dd or d/M/yyyy.
+     *
+     * @throws XiaoBaiException if neither pattern matches
+     */
+    public static LocalDate parseDate(String input) throws XiaoBaiException {
+        assert input != null : "Input string must not be null";
+        String s = normalizeSpaces(input);
+        Cursor c = new Cursor(s);
+        LocalDate d = c.isoDate();
+        if (d == null || c.has()) {
+            c = new Cursor(s);
+            d = c.dmyDate();
+        }
+        if (d == null || c.has()) {
+            throw new XiaoBaiException("Please give a date as yyyy-MM-dd or d/M/yyyy, e.g., 2019-12-02");
+        }
+        return d;
+    }
+
+    /** Trims the string and collapses each run of whitespace to one space, copying only if needed. */
     private static String normalizeSpaces(String s) {
         assert s != null : "Input string must not be null";
-        return s.trim().replaceAll("\\s+", " ");
+        String t = s.trim();
+        for (int i = 0; i < t.length(); i++) {
+            char ch = t.charAt(i);
+            if (isSpace(ch) && (ch != ' ' || isSpace(t.charAt(i + 1)))) {
+                return collapseSpaces(t, i);
+            }
+        }
+        return t;
     }
 
-    private static boolean isAllDigits(String s) {
-        assert s != null : "Input string must not be null";
-        if (s.isEmpty()) return false;
-        for (int i = 0; i < s.length(); i++) {
-            char ch = s.charAt(i);
-            if (ch < '0' || ch > '9') return false;
+    private static String collapseSpaces(String t, int from) {
+        StringBuilder sb = new StringBuilder(t.length()).append(t, 0, from);
+        for (int i = from; i < t.length(); i++) {
+            char ch = t.charAt(i);
+            if (!isSpace(ch)) {
+                sb.append(ch);
+            } else if (!isSpace(t.charAt(i - 1)) || i == from) {
+                sb.append(' ');
+            }
         }
-        return true;
+        return sb.toString();
     }
 
-    private static LocalDateTime tryParseTimeOnly(String s) {
-        assert s != null : "Input string must not be null";
-        if (s.length() == 4 && isAllDigits(s)) {
-            try {
-                LocalTime t = LocalTime.parse(s, TIME_HHMM);
-                return LocalDate.now().atTime(t);
-            } catch (DateTimeParseException ignored) {}
+    /** Matches the characters of the regex class \s. */
+    private static boolean isSpace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * Parses "yyyy-MM-dd", "d/M/yyyy", either followed by " HHmm" or " HH:mm",
+     * or "yyyy-MM-dd'T'HH:mm". Dates without a time are at the start of the day.
+     */
+    private static LocalDateTime tryParseDateTime(String s) {
+        Cursor c = new Cursor(s);
+        LocalDate date;
+        boolean isIso;
+        // An ISO date starts with a sign or four or more digits before '-'; a DMY date has '/' after the day.
+        int i = 0;
+        while (i < s.length() && isDigit(s.charAt(i))) {
+            i++;
         }
-        if (s.matches("\\d{1,2}:\\d{2}")) {
-            try {
-                LocalTime t = LocalTime.parse(s, TIME_HH_COLON_MM);
-                return LocalDate.now().atTime(t);
-            } catch (DateTimeParseException ignored) {}
+        if (i < s.length() && s.charAt(i) == '/') {
+            date = c.dmyDate();
+            isIso = false;
+        } else {
+            date = c.isoDate();
+            isIso = true;
         }
-        return null;
+        if (date == null) return null;
+        if (!c.has()) return date.atStartOfDay();
+
+        char sep = c.peek();
+        c.pos++;
+        LocalTime time;
+        if (sep == ' ') {
+            time = parseTime(s, c.pos, s.length());
+        } else if (sep == 'T' && isIso) {
+            time = c.timeHhColonMm();
+            if (c.has()) return null;
+        } else {
+            return null;
+        }
+        return time == null ? null : date.atTime(time);
     }
 
-    private static LocalDateTime tryParseIsoDateTime(String s) {
-        assert s != null : "Input string must not be null";
-        try {
-            return LocalDateTime.parse(s, ISO_DATE_TIME_HHMM); // "yyyy-MM-dd HHmm"
-        } catch (DateTimeParseException ignored) {}
-        try {
-            return LocalDateTime.parse(s, ISO_DATE_TIME_HH_COLON_MM); // "yyyy-MM-dd HH:mm"
-        } catch (DateTimeParseException ignored) {}
-        try {
-            return LocalDateTime.parse(s, ISO_T_DATE_TIME_HH_COLON_MM); // "yyyy-MM-dd'T'HH:mm"
-        } catch (DateTimeParseException ignored) {}
-        return null;
+    /** Parses s[from, to) as "HHmm" or "HH:mm", or returns null. */
+    private static LocalTime parseTime(String s, int from, int to) {
+        Cursor c = new Cursor(s, from, to);
+        LocalTime t = to - from == 4 ? c.timeHhmm() : c.timeHhColonMm();
+        return t != null && !c.has() ? t : null;
     }
 
-    private static LocalDateTime tryParseDmyDateTime(String s) {
-        assert s != null : "Input string must not be null";
-        try {
-            return LocalDateTime.parse(s, DMY_DATE_TIME_HHMM); // "d/M/uuuu HHmm"
-        } catch (DateTimeParseException ignored) {}
-        try {
-            return LocalDateTime.parse(s, DMY_DATE_TIME_HH_COLON_MM); // "d/M/uuuu HH:mm"
-        } catch (DateTimeParseException ignored) {}
-        return null;
-    }
+    /**
+     * Scans fields of a date or time from a region of a string.
+     * Each method consumes its field and returns null, without throwing, if the field is malformed.
+     */
+    private static final class Cursor {
+        private final String s;
+        private final int end;
+        private int pos;
 
-    private static LocalDate tryParseDateOnly(String s) {
-        assert s != null : "Input string must not be null";
-        try {
-            return LocalDate.parse(s, ISO_DATE); // "uuuu-MM-dd"
-        } catch (DateTimeParseException ignored) {}
-        try {
-            return LocalDate.parse(s, DMY_DATE); // "d/M/uuuu"
-        } catch (DateTimeParseException ignored) {}
-        return null;
+        Cursor(String s) {
+            this(s, 0, s.length());
+        }
+
+        Cursor(String s, int from, int end) {
+            this.s = s;
+            this.pos = from;
+            this.end = end;
+        }
+
+        boolean has() {
+            return pos < end;
+        }
+
+        char peek() {
+            return s.charAt(pos);
+        }
+
+        boolean expect(char ch) {
+            if (pos < end && s.charAt(pos) == ch) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /** Reads exactly n digits, or returns -1. */
+        int fixed(int n) {
+            if (end - pos < n) return -1;
+            int v = 0;
+            for (int i = 0; i < n; i++) {
+                char ch = s.charAt(pos + i);
+                if (!isDigit(ch)) return -1;
+                v = v * 10 + (ch - '0');
+            }
+            pos += n;
+            return v;
+        }
+
+        /** Reads up to 19 digits, as a variable-width field does; returns -1 if there are none or more. */
+        long digits(int minDigits) {
+            int start = pos;
+            long v = 0;
+            while (pos < end && isDigit(s.charAt(pos))) {
+                if (v < DIGITS_CAP) {
+                    v = v * 10 + (s.charAt(pos) - '0'); // larger values are out of range for every field
+                }
+                pos++;
+            }
+            int n = pos - start;
+            return n < minDigits || n > MAX_DIGITS ? -1 : v;
+        }
+
+        /** Reads a "uuuu" year: four digits, more than four only with '+', or '-' and at least four. */
+        Long year() {
+            char sign = pos < end ? s.charAt(pos) : 0;
+            if (sign == '+' || sign == '-') {
+                pos++;
+            }
+            int start = pos;
+            long v = digits(4);
+            if (v < 0) return null;
+            int n = pos - start;
+            if (sign == '+' && n <= 4 || sign != '+' && sign != '-' && n > 4) return null;
+            if (sign == '-') {
+                if (v == 0) return null; // strict parsing rejects "-0000"
+                v = -v;
+            }
+            return Math.abs(v) > MAX_YEAR ? null : v;
+        }
+
+        LocalDate isoDate() {
+            Long y = year();
+            if (y == null || !expect('-')) return null;
+            int m = fixed(2);
+            if (m < 0 || !expect('-')) return null;
+            int d = fixed(2);
+            return d < 0 ? null : date(y, m, d);
+        }
+
+        LocalDate dmyDate() {
+            long d = digits(1);
+            if (d < 0 || !expect('/')) return null;
+            long m = digits(1);
+            if (m < 0 || !expect('/')) return null;
+            Long y = year();
+            return y == null ? null : date(y, m, d);
+        }
+
+        LocalTime timeHhmm() {
+            int h = fixed(2);
+            int m = h < 0 ? -1 : fixed(2);
+            return time(h, m);
+        }
+
+        LocalTime timeHhColonMm() {
+            int h = fixed(2);
+            if (h < 0 || !expect(':')) return null;
+            return time(h, fixed(2));
+        }
+
+        private static LocalTime time(int h, int m) {
+            if (h < 0 || h > 23 || m < 0 || m > 59) return null;
+            return LocalTime.of(h, m);
+        }
+
+        private static LocalDate date(long y, long m, long d) {
+            if (m < 1 || m > 12 || d < 1) return null;
+            if (d > Month.of((int) m).length(Year.isLeap(y))) return null;
+            return LocalDate.of((int) y, (int) m, (int) d);
+        }
     }
 
     private static String buildHelpMessage(String raw) {
@@ -193,39 +362,51 @@ public final class DateTimeUtil {
         assert s != null : "Input string must not be null";
         String lower = s.toLowerCase(Locale.ENGLISH);
 
-        // today / tomorrow / tmr
-        if (lower.startsWith("today") || lower.startsWith("tomorrow") || lower.startsWith("tmr")) {
+        // today / tomorrow / tmr(w); the time starts after the word that matched
+        String day = lower.startsWith("today") ? "today"
+                : lower.startsWith("tomorrow") ? "tomorrow"
+                : lower.startsWith("tmrw") ? "tmrw"
+                : lower.startsWith("tmr") ? "tmr"
+                : null;
+        if (day != null) {
             LocalDate base = LocalDate.now();
-            if (lower.startsWith("tomorrow") || lower.startsWith("tmr")) base = base.plusDays(1);
-            String timePart = extractOptionalTime(s, 5); // "today" length used as baseline
+            if (!day.equals("today")) base = base.plusDays(1);
+            String timePart = extractOptionalTime(s, day.length());
             LocalTime time = parseOptionalTime(timePart);
             if (time == null) time = LocalTime.MIDNIGHT;
             return base.atTime(time);
         }
 
-        String[] tokens = lower.split("\\s+");
-        if (tokens.length >= 1) {
-            boolean hasNext = tokens[0].equals("next");
-            String wToken = hasNext && tokens.length >= 2 ? tokens[1] : tokens[0];
-            DayOfWeek dow = parseWeekdayToken(wToken);
-            if (dow != null) {
-                LocalDate base = LocalDate.now();
-                LocalDate target = next(dow, base); // always the NEXT occurrence (even if today)
-                String timePart = null;
-                if (hasNext && tokens.length >= 3) {
-                    timePart = tokens[2];
-                } else if (!hasNext && tokens.length >= 2) {
-                    timePart = tokens[1];
-                }
-                LocalTime time = parseOptionalTime(timePart);
-                if (time == null) time = LocalTime.MIDNIGHT;
-                return target.atTime(time);
+        // [next] <weekday> [time]; the input is normalized, so tokens are separated by single spaces
+        int firstEnd = tokenEnd(lower, 0);
+        boolean hasNext = firstEnd == 4 && lower.startsWith("next");
+        int wStart = 0;
+        int wEnd = firstEnd;
+        if (hasNext && firstEnd < lower.length()) {
+            wStart = firstEnd + 1;
+            wEnd = tokenEnd(lower, wStart);
+        }
+        DayOfWeek dow = parseWeekdayToken(lower.substring(wStart, wEnd));
+        if (dow != null) {
+            LocalDate base = LocalDate.now();
+            LocalDate target = next(dow, base); // always the NEXT occurrence (even if today)
+            LocalTime time = null;
+            if (wEnd < lower.length()) {
+                int tStart = wEnd + 1;
+                time = parseTime(lower, tStart, tokenEnd(lower, tStart));
             }
+            if (time == null) time = LocalTime.MIDNIGHT;
+            return target.atTime(time);
         }
 
         return null;
     }
 
+    private static int tokenEnd(String s, int from) {
+        int i = s.indexOf(' ', from);
+        return i < 0 ? s.length() : i;
+    }
+
     private static String extractOptionalTime(String s, int baselineWordLen) {
         // For phrases like "today 14:00" or "tomorrow 1400"
         String trimmed = s.trim();
@@ -236,13 +417,7 @@ public final class DateTimeUtil {
 
     private static LocalTime parseOptionalTime(String maybeTime) {
         if (maybeTime == null) return null;
-        try {
-            if (maybeTime.matches("\\d{4}")) return LocalTime.parse(maybeTime, TIME_HHMM);
-        } catch (DateTimeParseException ignored) {}
-        try {
-            if (maybeTime.matches("\\d{1,2}:\\d{2}")) return LocalTime.parse(maybeTime, TIME_HH_COLON_MM);
-        } catch (DateTimeParseException ignored) {}
-        return null;
+        return parseTime(maybeTime, 0, maybeTime.length());
     }
 
     private static DayOfWeek parseWeekdayToken(String tok) {
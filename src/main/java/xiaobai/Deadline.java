@@ -49,8 +49,8 @@ public class Deadline extends Task {
      * @return Formatted string representation of the deadline task.
      */
     @Override
-    public String toString() {
+    protected String render() {
         assert by != null : "Deadline must not be null before printing";
-        return "[D]" + super.toString() + " (by: " + DateTimeUtil.print(by) + ")";
+        return "[D]" + super.render() + " (by: " + DateTimeUtil.print(by) + ")";
     }
 }
@@ -1,7 +1,9 @@
 package xiaobai;
 
+import java.util.List;
+
 public class DeleteCommand extends Command {
-    private final int index;
+    private final TaskSelector selector;
 
     /**
      * Creates a DeleteCommand with the specified task index.
@@ -9,13 +11,22 @@ public class DeleteCommand extends Command {
      * @param index Index of the task to delete.
      */
     public DeleteCommand(int index) {
-        assert index > 0 : "Index must be positive";
-        this.index = index;
+        this(TaskSelector.of(TaskRef.ofPosition(index)));
     }
 
     /**
-     * Deletes the task at the given index from the task list,
-     * prints confirmation to the user, and saves the updated task list.
+     * Creates a DeleteCommand for the selected tasks.
+     *
+     * @param selector Tasks to delete.
+     */
+    DeleteCommand(TaskSelector selector) {
+        assert selector != null : "Selector must not be null";
+        this.selector = selector;
+    }
+
+    /**
+     * Deletes the selected tasks from the task list in one pass,
+     * prints confirmation to the user, and saves the updated task list with a single write.
      *
      * @param tasks Task list.
      * @param ui User interface.
@@ -26,13 +37,26 @@ public class DeleteCommand extends Command {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         assert storage != null : "Storage must not be null";
-        if (index < 1 || index > tasks.size()) throw new XiaoBaiException("(˙_˙) That task number is invalid.");
-        int oldSize = tasks.size();
-        Task t = tasks.remove(index);
-        assert t != null : "Removed task must not be null";
-        assert tasks.size() == oldSize - 1 : "Task list size should decrease after delete";
-        ui.printBoxed("Noted. I've removed this task:\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
-        save(storage, tasks, ui);
+        if (selector.isSingle()) {
+            int index = selector.single().resolve(tasks);
+            int oldSize = tasks.size();
+            Task t = tasks.remove(index);
+            assert t != null : "Removed task must not be null";
+            assert tasks.size() == oldSize - 1 : "Task list size should decrease after delete";
+            ui.printBoxed("Noted. I've removed this task:\n  " + t + "\nNow you have " + tasks.size() + " tasks in the list.");
+            save(storage, tasks, ui, Storage.deleteEntry(index));
+            return;
+        }
+
+        int[] positions = selector.select(tasks);
+        if (positions.length == 0) {
+            ui.printBoxed("No tasks matched, so nothing was removed.");
+            return;
+        }
+        List<Task> removed = tasks.removeAll(positions);
+        assert removed.size() == positions.length : "Every selected task must be removed";
+        ui.printBoxed("Noted. I've removed " + removed.size() + " tasks.\nNow you have " + tasks.size() + " tasks in the list.");
+        save(storage, tasks, ui, Storage.deleteEntry(positions));
         assert tasks.size() >= 0 : "Task list size must not be negative";
     }
 }
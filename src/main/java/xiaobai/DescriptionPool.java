@@ -0,0 +1,101 @@
+package xiaobai;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares one String between tasks with the same description.
+ * Descriptions are held weakly, so once no task uses a description it is released.
+ * Work that interns many descriptions on one thread, such as one chunk of a file being loaded,
+ * goes through a {@link Batch}, which answers repeated descriptions without taking the pool's lock,
+ * so parallel loaders do not queue up on it.
+ * Keeps count of how often a description was already pooled, to show whether pooling pays off.
+ */
+final class DescriptionPool {
+    // The value refers to the key weakly too, or the entry would keep its own key alive.
+    private static final Map<String, WeakReference<String>> POOL = new WeakHashMap<>();
+    private static long lookups; // guarded by POOL
+    private static long hits; // guarded by POOL
+    private static final LongAdder BATCH_HITS = new LongAdder(); // answered by a Batch without the pool
+
+    private DescriptionPool() {}
+
+    /**
+     * Returns the pooled string equal to the description, pooling it if there is none.
+     *
+     * @param description Task description.
+     * @return A string equal to the description, shared with other tasks where possible.
+     */
+    static String intern(String description) {
+        assert description != null : "Description must not be null";
+        synchronized (POOL) {
+            lookups++;
+            WeakReference<String> ref = POOL.get(description);
+            String pooled = ref == null ? null : ref.get();
+            if (pooled != null) {
+                hits++;
+                return pooled;
+            }
+            POOL.put(description, new WeakReference<>(description));
+            return description;
+        }
+    }
+
+    /**
+     * Remembers the repeated descriptions interned through it, for use by a single thread.
+     * Once a description has been found in the pool, later lookups of it skip the pool's lock.
+     */
+    static final class Batch {
+        private final Map<String, String> repeated = new HashMap<>();
+
+        /**
+         * Returns the pooled string equal to the description, pooling it if there is none.
+         *
+         * @param description Task description.
+         * @return A string equal to the description, shared with other tasks where possible.
+         */
+        String intern(String description) {
+            assert description != null : "Description must not be null";
+            String pooled = repeated.get(description);
+            if (pooled != null) {
+                BATCH_HITS.increment();
+                return pooled;
+            }
+            pooled = DescriptionPool.intern(description);
+            if (pooled != description) { // already pooled, so likely to come up again
+                repeated.put(pooled, pooled);
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * Returns the share of lookups that found the description already pooled.
+     *
+     * @return Hit rate between 0 and 1, or 0 if nothing was looked up yet.
+     */
+    static double hitRate() {
+        long batchHits = BATCH_HITS.sum();
+        synchronized (POOL) {
+            long total = lookups + batchHits;
+            return total == 0 ? 0 : (double) (hits + batchHits) / total;
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the pool, shown by the stats command.
+     *
+     * @return Number of pooled descriptions and the hit rate.
+     */
+    static String stats() {
+        long batchHits = BATCH_HITS.sum();
+        synchronized (POOL) {
+            long total = lookups + batchHits;
+            return String.format("%d distinct descriptions pooled; %.1f%% of %d lookups shared an existing one.",
+                    POOL.size(), total == 0 ? 0.0 : 100.0 * (hits + batchHits) / total, total);
+        }
+    }
+}
@@ -1,76 +1,138 @@
 package xiaobai;
 
-import java.io.IOException;
-import java.util.Collections;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Label;
+import javafx.scene.control.OverrunStyle;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 
 public class DialogBox extends HBox {
-    @FXML private Label dialog;
-    @FXML private ImageView displayPicture;
+    private static final double PICTURE_SIZE = 80.0;
+    private static final double MAX_TEXT_WIDTH = 300.0;
 
-    private DialogBox(String text, Image img) {
-        assert text != null : "Text must not be null";
-        assert img != null : "Image must not be null";
-        try {
-            FXMLLoader fxmlLoader = new FXMLLoader(MainWindow.class.getResource("/view/DialogBox.fxml"));
-            fxmlLoader.setController(this);
-            fxmlLoader.setRoot(this);
-            fxmlLoader.load();
-            dialog.setWrapText(true);
-            dialog.setMaxWidth(280);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private final Label dialog = new Label();
+    private final ImageView displayPicture = new ImageView();
+
+    /**
+     * Creates an empty dialog box.
+     * The nodes are built in code, so no FXML is parsed per box. A box can be filled again
+     * with {@link #show(String, Image, boolean)}, which lets transcript cells reuse one box.
+     */
+    DialogBox() {
+        setAlignment(Pos.TOP_RIGHT);
+        setSpacing(10.0);
+        setMaxWidth(Double.MAX_VALUE);
+        setPadding(new Insets(10.0));
 
-        assert dialog != null : "Dialog label must be loaded";
-        assert displayPicture != null : "Display picture must be loaded";
         dialog.setWrapText(true);
-        dialog.setMaxWidth(300);
+        dialog.setMaxWidth(MAX_TEXT_WIDTH);
+        dialog.setLineSpacing(2.0);
+        dialog.setTextOverrun(OverrunStyle.CLIP);
+
+        displayPicture.setFitHeight(PICTURE_SIZE);
+        displayPicture.setFitWidth(PICTURE_SIZE);
+        displayPicture.setPreserveRatio(true);
+
+        getChildren().addAll(dialog, displayPicture);
+    }
+
+    /**
+     * Shows a message in this box.
+     * Bot messages have the picture on the left; user messages have it on the right.
+     *
+     * @param text Message text.
+     * @param img Picture of the speaker.
+     * @param isBot Whether the message is from XiaoBai.
+     */
+    void show(String text, Image img, boolean isBot) {
+        assert text != null : "Text must not be null";
+        assert img != null : "Image must not be null";
         dialog.setText(sanitize(text));
         displayPicture.setImage(img);
+        if (isBot) {
+            getChildren().setAll(displayPicture, dialog);
+            setAlignment(Pos.TOP_LEFT);
+        } else {
+            getChildren().setAll(dialog, displayPicture);
+            setAlignment(Pos.TOP_RIGHT);
+        }
     }
 
-    private void flip() {
-        ObservableList<Node> tmp = FXCollections.observableArrayList(getChildren());
-        assert tmp != null : "Children list must not be null";
-        Collections.reverse(tmp);
-        getChildren().setAll(tmp);
-        setAlignment(Pos.TOP_LEFT);
+    /**
+     * Makes text safe for the label in one pass: ANSI colour codes are dropped,
+     * box-drawing characters become ASCII, CRLF becomes LF, and any other character
+     * outside printable ASCII, newline, carriage return and tab becomes '?'.
+     */
+    static String sanitize(String s) {
+        if (s == null) return "";
+        int n = s.length();
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= ' ' && c <= '~' || c == '\t' || c == '\r') {
+                sb.append(c);
+            } else if (c == '\n') {
+                int last = sb.length() - 1;
+                if (last >= 0 && sb.charAt(last) == '\r') {
+                    sb.setLength(last);
+                }
+                sb.append(c);
+            } else if (c == '\u001B') {
+                int end = ansiEnd(s, i);
+                if (end < 0) {
+                    sb.append('?');
+                } else {
+                    i = end;
+                }
+            } else {
+                sb.append(boxToAscii(c));
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++; // one '?' per code point
+                }
+            }
+        }
+        return sb.toString();
     }
 
-    private static String sanitize(String s) {
-        if (s == null) return "";
-        String noAnsi = s.replaceAll("\\u001B\\[[;\\d]*m", "");
-        assert noAnsi != null : "String replace must not return null";
-        String ascii = noAnsi
-                .replace('┌', '+').replace('┐', '+').replace('└', '+').replace('┘', '+')
-                .replace('│', '|').replace('─', '-').replace('┬', '+').replace('┴', '+')
-                .replace('┤', '+').replace('├', '+').replace('┼', '+');
-        ascii = ascii.replaceAll("[^\\p{Print}\\n\\r\\t]", "?");
-        assert ascii != null : "ASCII sanitization must not return null";
-        return ascii.replace("\r\n", "\n");
+    /** Returns the index of the 'm' ending an ANSI colour code starting at i, or -1 if there is none. */
+    private static int ansiEnd(String s, int i) {
+        if (i + 1 >= s.length() || s.charAt(i + 1) != '[') return -1;
+        for (int j = i + 2; j < s.length(); j++) {
+            char c = s.charAt(j);
+            if (c == 'm') return j;
+            if (c != ';' && (c < '0' || c > '9')) return -1;
+        }
+        return -1;
+    }
+
+    private static char boxToAscii(char c) {
+        switch (c) {
+        case '│':
+            return '|';
+        case '─':
+            return '-';
+        case '┌': case '┐': case '└': case '┘': case '┬': case '┴': case '┤': case '├': case '┼':
+            return '+';
+        default:
+            return '?';
+        }
     }
 
     public static DialogBox getUserDialog(String text, Image img) {
         assert text != null : "User dialog text must not be null";
         assert img != null : "User dialog image must not be null";
-        return new DialogBox(text, img);
+        DialogBox db = new DialogBox();
+        db.show(text, img, false);
+        return db;
     }
 
     public static DialogBox getBotDialog(String text, Image img) {
         assert text != null : "Bot dialog text must not be null";
         assert img != null : "Bot dialog image must not be null";
-        var db = new DialogBox(text, img);
-        db.flip();
+        DialogBox db = new DialogBox();
+        db.show(text, img, true);
         return db;
     }
 }
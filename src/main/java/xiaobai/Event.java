@@ -62,10 +62,10 @@ public class Event extends Task {
      * @return Formatted string representation of the event task.
      */
     @Override
-    public String toString() {
+    protected String render() {
         assert start != null : "Start time must not be null before printing";
         assert end != null : "End time must not be null before printing";
-        return "[E]" + super.toString()
+        return "[E]" + super.render()
                 + " (from: " + DateTimeUtil.print(start)
                 + " to: " + DateTimeUtil.print(end) + ")";
     }
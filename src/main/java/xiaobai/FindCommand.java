@@ -8,6 +8,11 @@ public class FindCommand extends Command {
         this.keyword = keyword;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws XiaoBaiException {
         assert tasks != null : "TaskList must not be null";
@@ -21,11 +26,9 @@ public class FindCommand extends Command {
 
         StringBuilder sb = new StringBuilder("Here are the matching tasks in your list:\n");
         int n = 0;
-        for (Task t : tasks.asList()) {
+        for (Task t : tasks.find(needle)) {
             assert t != null : "Task in list must not be null";
-            if (t.description != null && t.description.toLowerCase().contains(needle)) {
-                sb.append(" ").append(++n).append(".").append(t).append("\n");
-            }
+            sb.append(" ").append(++n).append(".").append(t).append("\n");
         }
 
         if (n == 0) {
@@ -4,16 +4,27 @@ package xiaobai;
  * A UI used by the GUI layer that accumulates output as text
  */
 public class GuiUi extends Ui {
-    private final StringBuilder sb = new StringBuilder();
+    private final StringBuilder sb;
 
+    public GuiUi() {
+        this(new StringBuilder());
+    }
+
+    private GuiUi(StringBuilder sb) {
+        super(sb);
+        this.sb = sb;
+    }
+
+    @Override
     public void printLine() { }
 
     public void printBox(String msg) {
-        sb.append(msg).append(System.lineSeparator());
+        write(msg);
     }
 
+    @Override
     public void printErrorBox(String msg) {
-        sb.append(msg).append(System.lineSeparator());
+        write(msg);
     }
 
     public String getText() {
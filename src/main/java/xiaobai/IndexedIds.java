@@ -0,0 +1,61 @@
+package xiaobai;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * IDs of the tasks in a task index, numbered with ordinals in the order they were added.
+ * Tasks are only ever appended with increasing IDs, so the IDs are sorted by ordinal
+ * and an ID is found by binary search. Removed tasks leave a tombstone.
+ */
+final class IndexedIds {
+    private long[] ids = new long[16];
+    private final BitSet removed = new BitSet();
+    private int count;
+    private int removedCount;
+
+    /**
+     * Adds an ID larger than every ID added so far.
+     *
+     * @param id Task ID.
+     * @return Ordinal of the ID.
+     */
+    int add(long id) {
+        assert count == 0 || id > ids[count - 1] : "IDs must be added in increasing order";
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+        }
+        ids[count] = id;
+        return count++;
+    }
+
+    /**
+     * Marks the ID as removed.
+     *
+     * @param id Task ID.
+     */
+    void remove(long id) {
+        int ordinal = Arrays.binarySearch(ids, 0, count, id);
+        if (ordinal >= 0 && !removed.get(ordinal)) {
+            removed.set(ordinal);
+            removedCount++;
+        }
+    }
+
+    /** Returns the ID with the given ordinal, or 0 if it was removed. */
+    long idAt(int ordinal) {
+        assert ordinal >= 0 && ordinal < count : "Ordinal out of bounds";
+        return removed.get(ordinal) ? 0 : ids[ordinal];
+    }
+
+    /** Returns whether more than half of the IDs were removed, so the index is worth rebuilding. */
+    boolean isMostlyRemoved() {
+        return removedCount > count / 2;
+    }
+
+    void clear() {
+        count = 0;
+        removedCount = 0;
+        removed.clear();
+    }
+}
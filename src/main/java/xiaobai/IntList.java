@@ -0,0 +1,40 @@
+package xiaobai;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of ints, used by the task indexes and selections to avoid boxing.
+ */
+final class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int i) {
+        assert i >= 0 && i < size : "Index out of bounds";
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int last() {
+        assert size > 0 : "List must not be empty";
+        return values[size - 1];
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,94 @@
+package xiaobai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Trigram index over lowercased task descriptions, used to answer substring searches.
+ * Every indexed task gets an ordinal in the order it was added, which is list order
+ * as long as tasks are only ever appended. Posting lists are sorted arrays of ordinals;
+ * removed tasks leave a tombstone until the index is rebuilt.
+ * The index keeps task IDs rather than tasks, so lists that decode tasks on demand stay compact.
+ */
+class KeywordIndex {
+    static final int GRAM = 3;
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final IndexedIds ids = new IndexedIds();
+
+    /**
+     * Indexes the task's description.
+     *
+     * @param t Task to index.
+     */
+    void add(Task t) {
+        assert t != null : "Task must not be null";
+        int ordinal = ids.add(t.getId());
+        String s = t.description.toLowerCase();
+        for (int i = 0; i + GRAM <= s.length(); i++) {
+            IntList posting = postings.computeIfAbsent(gram(s, i), k -> new IntList());
+            if (posting.isEmpty() || posting.last() != ordinal) { // trigram may repeat within a description
+                posting.add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Removes the task with the given ID from the index.
+     *
+     * @param id ID of the task to remove.
+     */
+    void remove(long id) {
+        ids.remove(id);
+    }
+
+    /** Returns whether most indexed tasks were removed, so the index is worth rebuilding. */
+    boolean isMostlyRemoved() {
+        return ids.isMostlyRemoved();
+    }
+
+    void clear() {
+        postings.clear();
+        ids.clear();
+    }
+
+    /**
+     * Returns the tasks whose lowercased description contains the needle, in list order.
+     * Only the smallest posting list among the needle's trigrams is scanned.
+     *
+     * @param needle Lowercased search string of at least {@link #GRAM} characters.
+     * @param byId Looks up a task by ID, returning null if it is gone.
+     * @return Matching tasks.
+     */
+    List<Task> find(String needle, LongFunction<Task> byId) {
+        assert needle != null && needle.length() >= GRAM : "Needle must be at least one trigram long";
+        IntList smallest = null;
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            IntList posting = postings.get(gram(needle, i));
+            if (posting == null) {
+                return List.of();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        assert smallest != null : "Needle must contain at least one trigram";
+
+        List<Task> result = new ArrayList<>();
+        for (int i = 0; i < smallest.size(); i++) {
+            long id = ids.idAt(smallest.get(i));
+            Task t = id > 0 ? byId.apply(id) : null;
+            if (t != null && t.description.toLowerCase().contains(needle)) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
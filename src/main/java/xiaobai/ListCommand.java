@@ -1,20 +1,80 @@
 package xiaobai;
 
 public class ListCommand extends Command {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final String USAGE = "Use: list [page] [--page-size <n>]";
+
+    private final int page;
+    private final int pageSize;
+
     /**
-     * Displays all tasks in the list.
+     * Creates a ListCommand showing the first page of tasks.
+     */
+    public ListCommand() {
+        this(1, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a ListCommand showing one page of tasks.
+     *
+     * @param page 1-based page number.
+     * @param pageSize Number of tasks per page.
+     */
+    public ListCommand(int page, int pageSize) {
+        assert page > 0 : "Page must be positive";
+        assert pageSize > 0 : "Page size must be positive";
+        this.page = page;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    /**
+     * Displays one page of tasks, writing them to the Ui one line at a time.
+     * Task numbers are positions in the whole list, so they can be used with mark and delete.
      *
      * @param tasks Task list.
      * @param ui User interface.
      * @param storage Storage handler.
+     * @throws XiaoBaiException If the page does not exist.
      */
     @Override
-    public void execute(TaskList tasks, Ui ui, Storage storage) {
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws XiaoBaiException {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         assert storage != null : "Storage must not be null";
-        String rendered = tasks.renderList();
-        assert rendered != null : "Rendered task list must not be null";
-        ui.printBoxed(rendered);
+        int size = tasks.size();
+        if (size == 0) {
+            ui.printBoxed("Your task list is empty.");
+            return;
+        }
+        int pages = (int) ((size + (long) pageSize - 1) / pageSize);
+        if (page > pages) {
+            throw new XiaoBaiException("(˙_˙) There is no page " + page + ". The list has "
+                    + pages + (pages == 1 ? " page." : " pages."));
+        }
+
+        int from = (int) Math.min((long) (page - 1) * pageSize, size);
+        int to = (int) Math.min((long) from + pageSize, size);
+        ui.beginBox();
+        ui.printBoxLine("Here are the tasks in your list:");
+        StringBuilder line = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            line.setLength(0);
+            line.append(' ').append(i + 1).append('.').append(tasks.get(i + 1));
+            ui.printBoxLine(line.toString());
+        }
+        if (pages > 1) {
+            ui.printBoxLine("Page " + page + " of " + pages + " (tasks " + (from + 1) + "-" + to + " of " + size + ")."
+                    + (page < pages ? " Type \"" + nextPageCommand() + "\" for more." : ""));
+        }
+        ui.endBox();
+    }
+
+    private String nextPageCommand() {
+        return "list " + (page + 1) + (pageSize == DEFAULT_PAGE_SIZE ? "" : " --page-size " + pageSize);
     }
 }
@@ -25,10 +25,16 @@ public class Main extends Application {
             MainWindow controller = fxmlLoader.getController();
             assert controller != null : "MainWindow controller must not be null";
             controller.setXiaoBai(xiaoBai);
+            xiaoBai.shutdownOnExit(); // stop() is not called when the process is killed
             stage.show();
         } catch (IOException e) {
             e.printStackTrace();
             assert false : "IOException occurred while starting application: " + e.getMessage();
         }
     }
+
+    @Override
+    public void stop() {
+        xiaoBai.shutdown();
+    }
 }
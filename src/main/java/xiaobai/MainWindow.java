@@ -1,61 +1,156 @@
 package xiaobai;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
-import javafx.scene.layout.VBox;
 
 public class MainWindow {
-    @FXML private ScrollPane scrollPane;
-    @FXML private VBox dialogContainer;
+    private static final int MAX_TRANSCRIPT = 200; // older messages are dropped
+    private static final double TASK_ROW_HEIGHT = 24.0;
+
+    @FXML private ListView<Message> transcript;
+    @FXML private ListView<Task> taskView;
     @FXML private TextField userInput;
     @FXML private Button sendButton;
+    @FXML private ProgressIndicator busy;
 
     private XiaoBai xiaoBai;
+    private ObservableTaskList taskItems;
+    private final ObservableList<Message> messages = FXCollections.observableArrayList();
+    private int pending; // commands sent but not answered yet; only touched on the FX thread
+
+    // Commands run one at a time, in order, off the FX thread, so the task list has a single writer.
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "xiaobai-worker");
+        t.setDaemon(true);
+        return t;
+    });
 
     private final Image userImage = new Image(getClass().getResourceAsStream("/images/User.png"));
     private final Image botImage  = new Image(getClass().getResourceAsStream("/images/XiaoBai.png"));
 
+    /** One entry of the chat transcript. */
+    private static final class Message {
+        private final String text;
+        private final boolean isBot;
+
+        Message(String text, boolean isBot) {
+            this.text = text;
+            this.isBot = isBot;
+        }
+    }
+
+    /** Transcript row that keeps one DialogBox and refills it for each message it shows. */
+    private final class MessageCell extends ListCell<Message> {
+        private final DialogBox box = new DialogBox();
+
+        MessageCell() {
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            box.prefWidthProperty().bind(transcript.widthProperty().subtract(40)); // room for the scroll bar
+        }
+
+        @Override
+        protected void updateItem(Message m, boolean empty) {
+            super.updateItem(m, empty);
+            if (empty || m == null) {
+                setGraphic(null);
+                return;
+            }
+            box.show(m.text, m.isBot ? botImage : userImage, m.isBot);
+            setGraphic(box);
+        }
+    }
+
+    /** Task panel row showing the task's position and its cached rendering. */
+    private static final class TaskCell extends ListCell<Task> {
+        @Override
+        protected void updateItem(Task t, boolean empty) {
+            super.updateItem(t, empty);
+            setText(empty || t == null ? null : (getIndex() + 1) + ". " + t);
+        }
+    }
+
     @FXML
     public void initialize() {
-        assert scrollPane != null : "ScrollPane must not be null";
-        assert dialogContainer != null : "DialogContainer must not be null";
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
+        assert transcript != null : "Transcript must not be null";
+        assert taskView != null : "Task view must not be null";
+        transcript.setItems(messages);
+        transcript.setCellFactory(list -> new MessageCell());
+        transcript.setFocusTraversable(false);
+        taskView.setCellFactory(list -> new TaskCell());
+        taskView.setFixedCellSize(TASK_ROW_HEIGHT); // lets the ListView skip measuring rows while scrolling
+        busy.setVisible(false);
     }
 
     /** Injects the XiaoBai instance. */
     public void setXiaoBai(XiaoBai xb) {
         assert xb != null : "XiaoBai instance must not be null";
         this.xiaoBai = xb;
+        this.taskItems = new ObservableTaskList(xb::getTasks);
+        taskView.setItems(taskItems);
 
         // Display greeting at startup
-        dialogContainer.getChildren().add(
-                DialogBox.getBotDialog("(*^_^*)\n Hello! I'm XiaoBai\n What can I do for you?", botImage)
-        );
+        addMessage("(*^_^*)\n Hello! I'm XiaoBai\n What can I do for you?", true);
     }
 
-    /** Handles send button and Enter key. */
+    /**
+     * Handles send button and Enter key.
+     * The command runs on the worker thread and its response is added to the transcript
+     * when it is ready, so the input box stays responsive during slow commands.
+     * Commands typed meanwhile are queued and answered in order.
+     */
     @FXML
     private void handleUserInput() {
         assert userInput != null : "UserInput field must not be null";
-        assert dialogContainer != null : "DialogContainer must not be null";
         assert xiaoBai != null : "XiaoBai instance must be set before handling input";
         String input = userInput.getText();
         if (input == null || input.isBlank()) return;
 
-        String response = xiaoBai.getResponse(input);
-        assert response != null : "Response must not be null";
-        dialogContainer.getChildren().addAll(
-                DialogBox.getUserDialog(input, userImage),
-                DialogBox.getBotDialog(response, botImage)
-        );
+        addMessage(input, false);
         userInput.clear();
+        pending++;
+        busy.setVisible(true);
+        worker.execute(() -> {
+            String response;
+            try {
+                response = xiaoBai.getResponse(input);
+            } catch (RuntimeException | Error e) {
+                response = "☹ OOPS!!! " + e;
+            }
+            String reply = response;
+            Platform.runLater(() -> showResponse(input, reply));
+        });
+    }
 
-        if ("bye".equalsIgnoreCase(input.trim())) {
+    private void showResponse(String input, String response) {
+        assert response != null : "Response must not be null";
+        addMessage(response, true);
+        taskItems.refresh();
+        pending--;
+        busy.setVisible(pending > 0);
+
+        if (Parser.isExit(input)) {
+            worker.shutdown();
             Platform.exit();
         }
     }
+
+    private void addMessage(String text, boolean isBot) {
+        messages.add(new Message(text, isBot));
+        if (messages.size() > MAX_TRANSCRIPT) {
+            messages.remove(0, messages.size() - MAX_TRANSCRIPT);
+        }
+        transcript.scrollTo(messages.size() - 1);
+    }
 }
@@ -0,0 +1,403 @@
+package xiaobai;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of tasks backed by a memory-mapped binary snapshot.
+ * Only an offset per record is kept in memory; tasks are decoded on demand
+ * and the most recently used ones are cached.
+ * Tasks added or replaced after loading are held in memory as normal objects, in an overlay
+ * that is compacted once removals have left more than half of it empty.
+ * Records without a stored ID are given their record number plus one as ID.
+ * A {@link Snapshot} copies only the record numbers, so writing the list out never decodes it all at once.
+ */
+class MappedTaskList extends AbstractList<Task> {
+    private static final int HEADER_SIZE = BinaryFormat.MAGIC.length + Short.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int LAST_ID_SIZE = Long.BYTES; // from version 3
+    private static final int CACHE_SIZE = 4096;
+
+    private final ByteBuffer buffer;
+    private final boolean hasIds;
+    private final int[] recordOffsets;
+    private final long seq;
+    private final long lastId;
+    private final int corrupted;
+
+    // Each slot is either a record number (>= 0) or ~index into overlay (< 0).
+    private int[] slots;
+    private int size;
+    private List<Task> overlay = new ArrayList<>();
+    private int overlayReleased; // overlay entries nulled by removals
+    private final Map<Integer, Task> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Task> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private MappedTaskList(ByteBuffer buffer, boolean hasIds, int[] recordOffsets, int count,
+            long seq, long lastId, int corrupted) {
+        this.buffer = buffer;
+        this.hasIds = hasIds;
+        this.recordOffsets = recordOffsets;
+        this.seq = seq;
+        this.lastId = lastId;
+        this.corrupted = corrupted;
+        this.size = count;
+        this.slots = new int[Math.max(count, 16)];
+        for (int i = 0; i < count; i++) {
+            slots[i] = i;
+        }
+    }
+
+    /**
+     * Maps the binary snapshot at the given path and indexes its records.
+     * Indexing only reads record headers; no task is decoded.
+     *
+     * @param path Binary snapshot file.
+     * @return List backed by the mapped file.
+     * @throws IOException If the file cannot be mapped or its header is invalid.
+     */
+    static MappedTaskList open(Path path) throws IOException {
+        assert path != null : "Path must not be null";
+        ByteBuffer buffer;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + ch.size() + " bytes");
+            }
+            buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buffer.limit() < HEADER_SIZE) {
+            throw new IOException("Truncated binary header");
+        }
+        byte[] magic = new byte[BinaryFormat.MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, BinaryFormat.MAGIC)) {
+            throw new IOException("Not a XiaoBai binary file");
+        }
+        int pos = magic.length;
+        short version = buffer.getShort(pos);
+        if (!BinaryFormat.isSupported(version)) {
+            throw new IOException("Unsupported binary format version " + version);
+        }
+        boolean hasIds = version >= BinaryFormat.VERSION_WITHOUT_LAST_ID;
+        pos += Short.BYTES;
+        long seq = buffer.getLong(pos);
+        pos += Long.BYTES;
+        int count = buffer.getInt(pos);
+        pos += Integer.BYTES;
+        long lastId = 0;
+        if (version >= BinaryFormat.VERSION) {
+            if (buffer.limit() < HEADER_SIZE + LAST_ID_SIZE) {
+                throw new IOException("Truncated binary header");
+            }
+            lastId = buffer.getLong(pos);
+            pos += LAST_ID_SIZE;
+        }
+
+        int[] offsets = new int[Math.max(count, 0)];
+        int indexed = 0;
+        while (indexed < count) {
+            int next = skipRecord(buffer, pos, hasIds);
+            if (next < 0) break;
+            offsets[indexed++] = pos;
+            pos = next;
+        }
+        return new MappedTaskList(buffer, hasIds, offsets, indexed, seq, lastId, count - indexed);
+    }
+
+    /** Returns the offset just past the record at pos, or -1 if it is truncated or corrupted. */
+    private static int skipRecord(ByteBuffer buffer, int pos, boolean hasIds) {
+        int limit = buffer.limit();
+        int lenPos = pos + 2 + (hasIds ? Long.BYTES : 0);
+        if (lenPos + Integer.BYTES > limit) return -1;
+        byte type = buffer.get(pos);
+        int len = buffer.getInt(lenPos);
+        if (len < 0) return -1;
+        long end = (long) lenPos + Integer.BYTES + len;
+        switch (type) {
+        case BinaryFormat.TYPE_TODO:
+            break;
+        case BinaryFormat.TYPE_DEADLINE:
+            end += Long.BYTES;
+            break;
+        case BinaryFormat.TYPE_EVENT:
+            end += 2L * Long.BYTES;
+            break;
+        default:
+            return -1;
+        }
+        return end > limit ? -1 : (int) end;
+    }
+
+    /** Returns the journal sequence number recorded in the snapshot header. */
+    long getSeq() {
+        return seq;
+    }
+
+    /** Returns the highest task ID recorded in the snapshot header, or 0 if the file predates it. */
+    long getLastId() {
+        return lastId;
+    }
+
+    /** Returns the number of records that could not be indexed. */
+    int getCorrupted() {
+        return corrupted;
+    }
+
+    /** Returns the ID of the last task, which is the largest ID in the list. */
+    long lastId() {
+        return size == 0 ? 0 : idAt(size - 1);
+    }
+
+    /** Returns the ID of the task at the given index, read from the record header without decoding the task. */
+    long idAt(int index) {
+        checkIndex(index);
+        int slot = slots[index];
+        if (slot < 0) {
+            return overlay.get(~slot).getId();
+        }
+        long id = hasIds ? buffer.getLong(recordOffsets[slot] + 2) : 0;
+        return id > 0 ? id : slot + 1;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index);
+        int slot = slots[index];
+        if (slot < 0) {
+            return overlay.get(~slot);
+        }
+        synchronized (cache) {
+            Task t = cache.get(slot);
+            if (t == null) {
+                t = decode(slot);
+                cache.put(slot, t);
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Replaces the task at the given index.
+     * The task is pinned in memory, so changes made to it are never lost to cache eviction.
+     */
+    @Override
+    public Task set(int index, Task t) {
+        assert t != null : "Task must not be null";
+        Task old = get(index);
+        int slot = slots[index];
+        if (slot < 0) {
+            overlay.set(~slot, t);
+        } else {
+            overlay.add(t);
+            slots[index] = ~(overlay.size() - 1);
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int index, Task t) {
+        assert t != null : "Task must not be null";
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        overlay.add(t);
+        slots[index] = ~(overlay.size() - 1);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task t = get(index);
+        int slot = slots[index];
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        size--;
+        if (slot < 0) {
+            release(slot);
+            compactOverlayIfSparse();
+        }
+        modCount++;
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions in one pass.
+     *
+     * @param sorted Distinct 0-based positions in increasing order.
+     */
+    void removePositions(int[] sorted) {
+        int next = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < sorted.length && sorted[next] == i) {
+                next++;
+                if (slots[i] < 0) {
+                    release(slots[i]);
+                }
+                continue;
+            }
+            slots[kept++] = slots[i];
+        }
+        size = kept;
+        compactOverlayIfSparse();
+        modCount++;
+    }
+
+    /** Drops the overlay entry of a removed task; its index stays reserved until the overlay is compacted. */
+    private void release(int slot) {
+        overlay.set(~slot, null);
+        overlayReleased++;
+    }
+
+    /** Moves the live overlay entries to a fresh overlay once most entries are released. */
+    private void compactOverlayIfSparse() {
+        if (overlayReleased <= overlay.size() / 2) {
+            return;
+        }
+        List<Task> live = new ArrayList<>(overlay.size() - overlayReleased);
+        for (int i = 0; i < size; i++) {
+            if (slots[i] < 0) {
+                live.add(overlay.get(~slots[i]));
+                slots[i] = ~(live.size() - 1);
+            }
+        }
+        overlay = live;
+        overlayReleased = 0;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        overlay.clear();
+        overlayReleased = 0;
+        synchronized (cache) {
+            cache.clear();
+        }
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the list as it is now, for writing out while the list goes on changing.
+     * Only the record numbers and the overlay are copied; no record is decoded.
+     *
+     * @return Snapshot of the list.
+     */
+    Snapshot snapshot() {
+        return new Snapshot(Arrays.copyOf(slots, size), new ArrayList<>(overlay));
+    }
+
+    /**
+     * A list of tasks as they were when {@link #snapshot()} was called.
+     * Mapped tasks are decoded on each access and not cached, so iterating over it pages in nothing for good.
+     */
+    final class Snapshot extends AbstractList<Task> implements RandomAccess {
+        private final int[] slots;
+        private final List<Task> overlay;
+
+        private Snapshot(int[] slots, List<Task> overlay) {
+            this.slots = slots;
+            this.overlay = overlay;
+        }
+
+        @Override
+        public Task get(int index) {
+            return taskAt(slots[index]);
+        }
+
+        @Override
+        public int size() {
+            return slots.length;
+        }
+
+        /**
+         * Writes the tasks as binary records. Mapped records that carry their ID are copied byte for byte.
+         *
+         * @param out Stream positioned just after the header.
+         * @throws IOException If writing fails.
+         */
+        void writeRecords(DataOutputStream out) throws IOException {
+            byte[] scratch = new byte[256];
+            for (int slot : slots) {
+                int pos = slot < 0 ? -1 : recordOffsets[slot];
+                if (pos < 0 || !hasIds || buffer.getLong(pos + 2) <= 0) {
+                    BinaryFormat.writeTask(out, taskAt(slot));
+                    continue;
+                }
+                int len = skipRecord(buffer, pos, true) - pos;
+                if (len > scratch.length) {
+                    scratch = new byte[Math.max(len, scratch.length * 2)];
+                }
+                buffer.get(pos, scratch, 0, len);
+                out.write(scratch, 0, len);
+            }
+        }
+
+        private Task taskAt(int slot) {
+            return slot < 0 ? overlay.get(~slot) : decode(slot);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private Task decode(int record) {
+        int pos = recordOffsets[record];
+        byte type = buffer.get(pos);
+        boolean isDone = (buffer.get(pos + 1) & BinaryFormat.FLAG_DONE) != 0;
+        long id = hasIds ? buffer.getLong(pos + 2) : 0;
+        if (id <= 0) {
+            id = record + 1;
+        }
+        int lenPos = pos + 2 + (hasIds ? Long.BYTES : 0);
+        int len = buffer.getInt(lenPos);
+        byte[] bytes = new byte[len];
+        buffer.get(lenPos + Integer.BYTES, bytes);
+        String desc = new String(bytes, StandardCharsets.UTF_8);
+        int timePos = lenPos + Integer.BYTES + len;
+
+        Task t;
+        switch (type) {
+        case BinaryFormat.TYPE_DEADLINE:
+            t = new Deadline(desc, BinaryFormat.fromEpochMinute(buffer.getLong(timePos)));
+            break;
+        case BinaryFormat.TYPE_EVENT:
+            t = new Event(desc,
+                    BinaryFormat.fromEpochMinute(buffer.getLong(timePos)),
+                    BinaryFormat.fromEpochMinute(buffer.getLong(timePos + Long.BYTES)));
+            break;
+        default:
+            t = new Todo(desc);
+            break;
+        }
+        if (isDone) t.markAsDone();
+        t.setId(id);
+        return t;
+    }
+}
@@ -1,22 +1,31 @@
 package xiaobai;
 
 public class MarkCommand extends Command {
-    private final int index;
+    private final TaskSelector selector;
+
     /**
-     * Marks a task in the task list as done.
-     * Throws XiaoBaiException if the index is invalid.
+     * Creates a MarkCommand with the specified task index.
      *
      * @param index Index of the task to mark as done.
      */
     public MarkCommand(int index) {
-        assert index > 0 : "Index must be positive";
-        this.index = index;
+        this(TaskSelector.of(TaskRef.ofPosition(index)));
     }
 
     /**
-     * Marks the task at the given index as done,
-     * prints confirmation to the user, and saves the updated task list.
-     * Throws XiaoBaiException if the index is out of bounds.
+     * Creates a MarkCommand for the selected tasks.
+     *
+     * @param selector Tasks to mark.
+     */
+    MarkCommand(TaskSelector selector) {
+        assert selector != null : "Selector must not be null";
+        this.selector = selector;
+    }
+
+    /**
+     * Marks the selected tasks as done,
+     * prints confirmation to the user, and saves the updated task list with a single write.
+     * Throws XiaoBaiException if a task number is out of bounds.
      *
      * @param tasks Task list.
      * @param ui User interface.
@@ -27,10 +36,24 @@ public class MarkCommand extends Command {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         assert storage != null : "Storage must not be null";
-        if (index < 1 || index > tasks.size()) throw new XiaoBaiException("(˙_˙) That task number is invalid.");
-        Task t = tasks.mark(index);
-        assert t != null : "Marked task must not be null";
-        ui.printBoxed("Nice! I've marked this task as done:\n  " + t);
-        save(storage, tasks, ui);
+        if (selector.isSingle()) {
+            int index = selector.single().resolve(tasks);
+            Task t = tasks.mark(index);
+            assert t != null : "Marked task must not be null";
+            ui.printBoxed("Nice! I've marked this task as done:\n  " + t);
+            save(storage, tasks, ui, Storage.markEntry(index));
+            return;
+        }
+
+        int[] positions = selector.select(tasks);
+        if (positions.length == 0) {
+            ui.printBoxed("No tasks matched, so nothing was changed.");
+            return;
+        }
+        for (int index : positions) {
+            tasks.mark(index);
+        }
+        ui.printBoxed("Nice! I've marked " + positions.length + " tasks as done.");
+        save(storage, tasks, ui, Storage.markEntry(positions));
     }
 }
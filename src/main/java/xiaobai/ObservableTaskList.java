@@ -0,0 +1,64 @@
+package xiaobai;
+
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * A read-only observable view of a {@link TaskList}, used as the items of the GUI task panel.
+ * Nothing is copied: the ListView asks for the rows it is showing and the tasks are read from the list,
+ * so only visible rows cost anything. Call {@link #refresh()} after a command has changed the list.
+ * The reported size only changes on refresh, as observers expect. Commands run on a worker thread,
+ * so a row drawn while one is running may be stale or missing until the refresh that follows it.
+ */
+class ObservableTaskList extends ObservableListBase<Task> {
+    private final Supplier<TaskList> tasks;
+    private int lastSize;
+
+    /**
+     * Creates a view of the task list given by the supplier,
+     * which is asked again on every access so that the list may be swapped.
+     *
+     * @param tasks Supplier of the current task list.
+     */
+    ObservableTaskList(Supplier<TaskList> tasks) {
+        assert tasks != null : "Task list supplier must not be null";
+        this.tasks = tasks;
+        this.lastSize = tasks.get().size();
+    }
+
+    @Override
+    public Task get(int index) {
+        if (index < 0 || index >= lastSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lastSize);
+        }
+        TaskList list = tasks.get();
+        try {
+            return list.get(index + 1);
+        } catch (RuntimeException | AssertionError e) {
+            return null; // the list shrank under a running command; redrawn on the next refresh
+        }
+    }
+
+    @Override
+    public int size() {
+        return lastSize;
+    }
+
+    /**
+     * Tells listeners that the list may have changed.
+     * Fired as a single replacement of every row, which a ListView handles by
+     * redrawing its visible cells only. Nothing is fired while the list stays empty.
+     */
+    void refresh() {
+        int oldSize = lastSize;
+        lastSize = tasks.get().size(); // listeners read the new size while the change fires
+        if (oldSize == 0 && lastSize == 0) {
+            return;
+        }
+        beginChange();
+        nextReplace(0, lastSize, Collections.nCopies(oldSize, (Task) null));
+        endChange();
+    }
+}
@@ -1,7 +1,6 @@
 package xiaobai;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class OnCommand extends Command {
@@ -17,6 +16,11 @@ public class OnCommand extends Command {
         this.raw = raw;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     /**
      * Finds all deadlines and events that fall on the given date,
      * and prints them to the user.
@@ -45,18 +49,9 @@ public class OnCommand extends Command {
         assert d != null : "Parsed date must not be null";
         StringBuilder sb = new StringBuilder();
         int n = 0;
-        for (Task t : tasks.asList()) {
+        for (Task t : tasks.on(d)) {
             assert t != null : "Task in list must not be null";
-            boolean match = false;
-            if (t instanceof Deadline) {
-                match = ((Deadline) t).getBy().toLocalDate().equals(d);
-            } else if (t instanceof Event) {
-                Event e = (Event) t;
-                match = !e.getEnd().toLocalDate().isBefore(d) && !e.getStart().toLocalDate().isAfter(d);
-            }
-            if (match) {
-                sb.append(++n).append(". ").append(t).append("\n");
-            }
+            sb.append(++n).append(". ").append(t).append("\n");
         }
         if (n == 0) {
             ui.printBoxed("No deadlines/events on " + DateTimeUtil.print(d));
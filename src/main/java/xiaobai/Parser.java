@@ -1,9 +1,62 @@
 package xiaobai;
 
+import java.util.Arrays;
+
 /**
  * Parses user input strings into corresponding Command objects.
+ * The input is scanned once: the command word is looked up in a table built at class load,
+ * and the /by, /from and /to markers are found by a character scan rather than a regex split.
  */
 public class Parser {
+    private static final String DEADLINE_USAGE = "Use: deadline <description> /by <due>";
+    private static final String EVENT_USAGE = "Use: event <description> /from <start> /to <end>";
+
+    /**
+     * Parses the arguments of one command word.
+     * Arguments start at index args of the trimmed input, just past the space after the word.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        Command parse(String s, int args) throws XiaoBaiException;
+    }
+
+    private static final class Entry {
+        private final String word;
+        private final Handler handler;
+
+        Entry(String word, Handler handler) {
+            this.word = word;
+            this.handler = handler;
+        }
+    }
+
+    // Command words bucketed by their first letter.
+    private static final Entry[][] TABLE = new Entry[26][];
+
+    static {
+        register("bye", (s, args) -> noArgs(s, args, new ByeCommand()));
+        register("list", Parser::parseList);
+        register("clear", (s, args) -> noArgs(s, args, new ClearCommand()));
+        register("todo", Parser::parseTodo);
+        register("deadline", Parser::parseDeadline);
+        register("event", Parser::parseEvent);
+        register("mark", (s, args) -> new MarkCommand(parseSelector(s, args, "mark")));
+        register("unmark", (s, args) -> new UnmarkCommand(parseSelector(s, args, "unmark")));
+        register("delete", (s, args) -> new DeleteCommand(parseSelector(s, args, "delete")));
+        register("find", Parser::parseFind);
+        register("source", Parser::parseSource);
+        register("on", Parser::parseOn);
+        register("use", Parser::parseUse);
+        register("stats", (s, args) -> noArgs(s, args, new StatsCommand()));
+    }
+
+    private static void register(String word, Handler handler) {
+        int bucket = word.charAt(0) - 'a';
+        Entry[] old = TABLE[bucket] == null ? new Entry[0] : TABLE[bucket];
+        Entry[] entries = Arrays.copyOf(old, old.length + 1);
+        entries[old.length] = new Entry(word, handler);
+        TABLE[bucket] = entries;
+    }
 
     /**
      * Parses input and returns the corresponding Command.
@@ -19,115 +72,229 @@ public class Parser {
             throw new UnknownCommandException(input);
         }
 
-        if (s.equals("bye")) return new ByeCommand();
-        if (s.equals("list")) return new ListCommand();
-        if (s.equals("clear")) return new ClearCommand();
+        int wordEnd = 0;
+        while (wordEnd < s.length() && !isSpace(s.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        Handler handler = lookup(s, wordEnd);
+        if (handler == null) {
+            throw new UnknownCommandException(s);
+        }
+        return handler.parse(s, Math.min(wordEnd + 1, s.length()));
+    }
 
-        if (s.startsWith("todo")) {
-            String rest = s.length() > 4 ? s.substring(5) : "";
-            if (rest.isBlank()) {
-                throw new EmptyDescriptionException("todo");
-            }
-            return new AddTodoCommand(rest);
+    /**
+     * Returns whether the input parses to a command that ends the session.
+     * Input that does not parse does not end it.
+     *
+     * @param input Raw input string.
+     * @return Whether the input is an exit command.
+     */
+    static boolean isExit(String input) {
+        try {
+            return parse(input).isExit();
+        } catch (XiaoBaiException e) {
+            return false;
         }
+    }
 
-        if (s.startsWith("deadline")) {
-            String rest = s.length() > 8 ? s.substring(9) : "";
-            String[] parts = rest.split("\\s+/by\\s+", 2);
-            if (parts.length < 2) {
-                throw new InvalidFormatException("Use: deadline <description> /by <due>");
-            }
-            String desc = parts[0].trim();
-            String due  = parts[1].trim();
-            if (desc.isBlank()) {
-                throw new EmptyDescriptionException("deadline");
-            }
-            if (due.isBlank()) {
-                throw new InvalidFormatException("Use: deadline <description> /by <due>");
+    private static Handler lookup(String s, int wordEnd) {
+        int bucket = s.charAt(0) - 'a';
+        if (bucket < 0 || bucket >= TABLE.length || TABLE[bucket] == null) {
+            return null;
+        }
+        for (Entry e : TABLE[bucket]) {
+            if (e.word.length() == wordEnd && s.startsWith(e.word)) {
+                return e.handler;
             }
-            return new AddDeadlineCommand(desc, due);
         }
+        return null;
+    }
+
+    private static Command noArgs(String s, int args, Command c) throws XiaoBaiException {
+        if (args < s.length()) {
+            throw new UnknownCommandException(s);
+        }
+        return c;
+    }
 
-        if (s.startsWith("event")) {
-            String rest = s.length() > 5 ? s.substring(6) : "";
-            String[] p1 = rest.split("\\s+/from\\s+", 2);
-            if (p1.length < 2) {
-                throw new InvalidFormatException("Use: event <description> /from <start> /to <end>");
+    /** Parses "list [page] [--page-size <n>]", with the two options in either order. */
+    private static Command parseList(String s, int args) throws XiaoBaiException {
+        int page = 1;
+        int pageSize = ListCommand.DEFAULT_PAGE_SIZE;
+        boolean hasPage = false;
+        boolean hasPageSize = false;
+        int i = skipSpaces(s, args);
+        while (i < s.length()) {
+            int end = i;
+            while (end < s.length() && !isSpace(s.charAt(end))) {
+                end++;
             }
-            String desc = p1[0].trim();
-            String[] p2 = p1[1].split("\\s+/to\\s+", 2);
-            if (p2.length < 2) {
-                throw new InvalidFormatException("Use: event <description> /from <start> /to <end>");
+            if (!hasPageSize && s.startsWith("--page-size", i) && end == i + 11) {
+                i = skipSpaces(s, end);
+                end = i;
+                while (end < s.length() && !isSpace(s.charAt(end))) {
+                    end++;
+                }
+                pageSize = parsePositive(s, i, end, ListCommand.USAGE);
+                hasPageSize = true;
+            } else if (!hasPage) {
+                page = parsePositive(s, i, end, ListCommand.USAGE);
+                hasPage = true;
+            } else {
+                throw new InvalidFormatException(ListCommand.USAGE);
             }
-            String start = p2[0].trim();
-            String end   = p2[1].trim();
+            i = skipSpaces(s, end);
+        }
+        return new ListCommand(page, pageSize);
+    }
 
-            if (desc.isBlank()) {
-                throw new EmptyDescriptionException("event");
-            }
-            if (start.isBlank() || end.isBlank()) {
-                throw new InvalidFormatException("Use: event <description> /from <start> /to <end>");
+    /** Parses s[from, to) as a positive int without allocating. */
+    private static int parsePositive(String s, int from, int to, String usage) throws XiaoBaiException {
+        if (from >= to || to - from > 9) {
+            throw new InvalidFormatException(usage);
+        }
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw new InvalidFormatException(usage);
             }
-            return new AddEventCommand(desc, start, end);
+            v = v * 10 + (ch - '0');
         }
+        if (v == 0) {
+            throw new InvalidFormatException(usage);
+        }
+        return v;
+    }
 
-        if (s.startsWith("mark ")) {
-            int idx = parseIndexOrThrow(s.substring(5), "mark");
-            return new MarkCommand(idx);
+    private static Command parseTodo(String s, int args) throws XiaoBaiException {
+        String rest = s.substring(args);
+        if (rest.isBlank()) {
+            throw new EmptyDescriptionException("todo");
         }
+        return new AddTodoCommand(rest);
+    }
 
-        if (s.startsWith("unmark ")) {
-            int idx = parseIndexOrThrow(s.substring(7), "unmark");
-            return new UnmarkCommand(idx);
+    private static Command parseDeadline(String s, int args) throws XiaoBaiException {
+        int by = findMarker(s, "/by", args);
+        if (by < 0) {
+            throw new InvalidFormatException(DEADLINE_USAGE);
+        }
+        String desc = slice(s, args, by);
+        String due = slice(s, by + 3, s.length());
+        if (desc.isBlank()) {
+            throw new EmptyDescriptionException("deadline");
+        }
+        if (due.isBlank()) {
+            throw new InvalidFormatException(DEADLINE_USAGE);
         }
+        return new AddDeadlineCommand(desc, due);
+    }
 
-        if (s.startsWith("delete ")) {
-            int idx = parseIndexOrThrow(s.substring(7), "delete");
-            return new DeleteCommand(idx);
+    private static Command parseEvent(String s, int args) throws XiaoBaiException {
+        int from = findMarker(s, "/from", args);
+        if (from < 0) {
+            throw new InvalidFormatException(EVENT_USAGE);
+        }
+        int startBegin = skipSpaces(s, from + 5);
+        int to = findMarker(s, "/to", startBegin);
+        if (to < 0) {
+            throw new InvalidFormatException(EVENT_USAGE);
         }
+        String desc = slice(s, args, from);
+        String start = slice(s, startBegin, to);
+        String end = slice(s, to + 3, s.length());
 
-        if (s.startsWith("find")) {
-            String rest = s.length() > 4 ? s.substring(5) : "";
-            if (rest.isBlank()) {
-                throw new InvalidFormatException("Use: find <keyword>");
-            }
-            return new FindCommand(rest);
+        if (desc.isBlank()) {
+            throw new EmptyDescriptionException("event");
+        }
+        if (start.isBlank() || end.isBlank()) {
+            throw new InvalidFormatException(EVENT_USAGE);
         }
+        return new AddEventCommand(desc, start, end);
+    }
 
-        if (s.startsWith("on ")) {
-            String raw = s.substring(3).trim();
-            if (raw.isBlank()) {
-                throw new InvalidFormatException("Use: on <yyyy-MM-dd|d/M/yyyy>");
-            }
-            return new OnCommand(raw);
+    private static TaskSelector parseSelector(String s, int args, String cmdName) throws XiaoBaiException {
+        if (args >= s.length()) {
+            throw new UnknownCommandException(s); // a bare "mark" is not a command, as before
+        }
+        return TaskSelector.parse(s.substring(args), cmdName);
+    }
+
+    private static Command parseFind(String s, int args) throws XiaoBaiException {
+        String rest = s.substring(args);
+        if (rest.isBlank()) {
+            throw new InvalidFormatException("Use: find <keyword>");
+        }
+        return new FindCommand(rest);
+    }
+
+    private static Command parseSource(String s, int args) throws XiaoBaiException {
+        String rest = slice(s, args, s.length());
+        if (rest.isBlank()) {
+            throw new InvalidFormatException("Use: source <file>");
         }
+        return new SourceCommand(rest);
+    }
 
-        throw new UnknownCommandException(s);
+    private static Command parseUse(String s, int args) throws XiaoBaiException {
+        String name = slice(s, args, s.length()).trim();
+        if (!Workspaces.isValidName(name)) {
+            throw new InvalidFormatException("Use: use <name>, where the name is up to 32 letters, digits, _ or -");
+        }
+        return new UseCommand(name);
+    }
+
+    private static Command parseOn(String s, int args) throws XiaoBaiException {
+        if (args >= s.length()) {
+            throw new UnknownCommandException(s);
+        }
+        String raw = slice(s, args, s.length());
+        if (raw.isBlank()) {
+            throw new InvalidFormatException("Use: on <yyyy-MM-dd|d/M/yyyy>");
+        }
+        return new OnCommand(raw);
     }
 
     /**
-     * Parses a task index from the given string.
+     * Finds a marker such as "/by" that has whitespace on both sides, searching from the given index.
+     * Whitespace before the search start does not count, matching a split of the substring from there.
      *
-     * @param s Input string.
-     * @param cmdName Command name.
-     * @return Parsed task index as integer.
-     * @throws XiaoBaiException If the index is invalid or not provided.
+     * @return Index of the marker, or -1 if there is none.
      */
-    private static int parseIndexOrThrow(String s, String cmdName) throws XiaoBaiException {
-        assert s != null : "Index string must not be null";
-        assert cmdName != null : "Command name must not be null";
-        String t = s.trim();
-        if (t.isEmpty()) {
-            throw new InvalidFormatException("Use: " + cmdName + " <task number>");
-        }
-        try {
-            int idx = Integer.parseInt(t);
-            if (idx <= 0) {
-                throw new InvalidIndexException();
+    private static int findMarker(String s, String marker, int from) {
+        int i = s.indexOf(marker, from + 1);
+        while (i >= 0) {
+            int after = i + marker.length();
+            if (isSpace(s.charAt(i - 1)) && after < s.length() && isSpace(s.charAt(after))) {
+                return i;
             }
-            return idx;
-        } catch (NumberFormatException e) {
-            throw new InvalidFormatException("Use: " + cmdName + " <task number>");
+            i = s.indexOf(marker, i + 1);
         }
+        return -1;
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && isSpace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Returns s[from, to) with surrounding whitespace removed, like substring followed by trim. */
+    private static String slice(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return s.substring(from, to);
+    }
+
+    /** Matches the characters of the regex class \s. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
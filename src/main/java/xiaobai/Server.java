@@ -0,0 +1,152 @@
+package xiaobai;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves one XiaoBai instance over TCP on the loopback interface, so many clients share one task list.
+ * A client sends one command per line and gets the response back followed by an empty line.
+ * Empty lines inside a response are sent as a single space, so the terminator is unambiguous.
+ * Each connection is handled on a thread of its own, and commands go through
+ * {@link XiaoBai#getResponse(String, Workspaces.Session)}, so clients that only read the list
+ * are not held up by each other. Each connection has its own session, so "use" only switches
+ * the workspace of the client that sent it. "bye" closes the connection, not the server.
+ */
+public class Server {
+    static final int DEFAULT_PORT = 4040;
+    private static final int BACKLOG = 50;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final XiaoBai xiaoBai;
+    private final ServerSocket serverSocket;
+    private final AtomicInteger clientCount = new AtomicInteger();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService clients = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "xiaobai-client-" + clientCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates a server bound to the given port on the loopback interface.
+     *
+     * @param xiaoBai Instance whose task list is shared.
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public Server(XiaoBai xiaoBai, int port) throws IOException {
+        assert xiaoBai != null : "XiaoBai instance must not be null";
+        assert port >= 0 && port <= 0xFFFF : "Port must be between 0 and 65535";
+        this.xiaoBai = xiaoBai;
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    }
+
+    /** Returns the port the server is listening on. */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until {@link #close()} is called.
+     *
+     * @throws IOException If accepting a connection fails.
+     */
+    public void run() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) break; // closed by close()
+                throw e;
+            }
+            connections.add(socket);
+            try {
+                clients.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket); // accepted while close() was running
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, drops the open ones, and waits for commands
+     * that are still running to finish, so the task list can be saved safely afterwards.
+     * Closing the sockets is what ends the connections, since a thread blocked reading
+     * a socket does not notice being interrupted.
+     */
+    public void close() {
+        closeQuietly(serverSocket);
+        clients.shutdown();
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        try {
+            if (!clients.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                clients.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            clients.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // nothing left to release
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            Workspaces.Session session = xiaoBai.newSession();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                writeResponse(out, xiaoBai.getResponse(line, session));
+                if (Parser.isExit(line)) break;
+            }
+        } catch (IOException e) {
+            // the client went away, or close() dropped it; its socket is closed above
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private static void writeResponse(Writer out, String response) throws IOException {
+        int start = 0;
+        while (start <= response.length()) {
+            int end = response.indexOf('\n', start);
+            if (end < 0) end = response.length();
+            int lineEnd = end > start && response.charAt(end - 1) == '\r' ? end - 1 : end;
+            out.write(lineEnd == start ? " " : response.substring(start, lineEnd));
+            out.write('\n');
+            start = end + 1;
+        }
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,134 @@
+package xiaobai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SourceCommand extends Command {
+    /** Scripts being run by the current thread, so a script that sources itself is caught. */
+    private static final ThreadLocal<Set<Path>> SOURCING = ThreadLocal.withInitial(HashSet::new);
+
+    private final String file;
+
+    /**
+     * Creates a SourceCommand that runs the commands in the given file.
+     *
+     * @param file Path of the script file.
+     */
+    public SourceCommand(String file) {
+        assert file != null : "File must not be null";
+        this.file = file;
+    }
+
+    /**
+     * Runs every line of the script as a command, in one storage batch,
+     * so the task list is written to disk once at the end instead of once per line.
+     * Output of the individual commands is suppressed; a summary with the line number
+     * and message of each failed command is printed instead.
+     * Blank lines and lines starting with '#' are skipped, and the script stops at "bye".
+     *
+     * @param tasks Task list.
+     * @param ui User interface.
+     * @param storage Storage handler.
+     * @throws XiaoBaiException If the file cannot be read, or is already being run by an enclosing script.
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws XiaoBaiException {
+        assert tasks != null : "TaskList must not be null";
+        assert ui != null : "Ui must not be null";
+        Path path;
+        List<String> lines;
+        try {
+            path = Paths.get(file.trim()).toRealPath();
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            throw new XiaoBaiException("(>_<) Failed to read " + file + ": " + e.getMessage());
+        }
+
+        Set<Path> sourcing = SOURCING.get();
+        if (!sourcing.add(path)) {
+            throw new XiaoBaiException("(˙_˙) " + path.getFileName()
+                    + " is already being run, so it cannot source itself.");
+        }
+        try {
+            run(lines, tasks, ui, storage);
+        } finally {
+            sourcing.remove(path);
+        }
+    }
+
+    private void run(List<String> lines, TaskList tasks, Ui ui, Storage storage) {
+        Ui quiet = new QuietUi();
+        List<String> errors = new ArrayList<>();
+        int ran = 0;
+        if (storage != null) {
+            storage.beginBatch();
+        }
+        try {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Command c;
+                try {
+                    c = Parser.parse(line);
+                } catch (XiaoBaiException e) {
+                    ran++;
+                    errors.add("Line " + (i + 1) + ": " + e.getMessage());
+                    continue;
+                }
+                if (c.isExit()) {
+                    break;
+                }
+                ran++;
+                if (c.getWorkspace() != null) {
+                    errors.add("Line " + (i + 1) + ": (˙_˙) Workspaces cannot be switched inside a script.");
+                    continue;
+                }
+                try {
+                    c.execute(tasks, quiet, storage);
+                } catch (XiaoBaiException e) {
+                    errors.add("Line " + (i + 1) + ": " + e.getMessage());
+                } catch (RuntimeException e) {
+                    errors.add("Line " + (i + 1) + ": " + (e.getMessage() == null ? e.toString() : e.getMessage()));
+                }
+            }
+        } finally {
+            if (storage != null) {
+                storage.endBatch(tasks.writerView(), ui);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("Ran " + ran + " commands from " + Path.of(file.trim()).getFileName()
+                + ": " + (ran - errors.size()) + " succeeded, " + errors.size() + " failed.");
+        for (String error : errors) {
+            sb.append("\n ").append(error);
+        }
+        sb.append("\nNow you have ").append(tasks.size()).append(" tasks in the list.");
+        ui.printBoxed(sb.toString());
+    }
+
+    /**
+     * A UI that discards all output, used for the commands of a script.
+     */
+    private static class QuietUi extends Ui {
+        @Override
+        public void printLine() { }
+
+        @Override
+        public void printBoxed(String... lines) { }
+
+        @Override
+        public void printBoxLine(String line) { }
+
+        @Override
+        public void printErrorBox(String msg) { }
+    }
+}
@@ -0,0 +1,24 @@
+package xiaobai;
+
+public class StatsCommand extends Command {
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    /**
+     * Shows the number of tasks and how often loaded and added descriptions
+     * shared a string already in the description pool.
+     *
+     * @param tasks Task list.
+     * @param ui User interface.
+     * @param storage Storage handler.
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        assert tasks != null : "TaskList must not be null";
+        assert ui != null : "Ui must not be null";
+        ui.printBoxed("You have " + tasks.size() + " tasks in the list.", DescriptionPool.stats());
+    }
+}
@@ -1,23 +1,96 @@
 package xiaobai;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles saving and loading tasks to and from disk.
- * Uses text file serialization.
+ * Uses text file serialization by default, or the compact {@link BinaryFormat};
+ * the format of an existing file is detected on load.
+ * In journal mode, each mutation is appended as one record to a journal file
+ * next to the snapshot, and the journal is replayed on top of the snapshot on load.
+ * Journal records carry a sequence number; the snapshot header records the last
+ * sequence number it contains, so a crash during compaction never replays a record twice.
+ * Every snapshot is numbered when it is taken and written to a temporary file of its own;
+ * one that finishes after a newer snapshot has been renamed into place is discarded,
+ * so a slow background compaction never overwrites a later save.
+ * The highest task ID handed out is saved with every snapshot and can be read back from the
+ * journal's add records, so a task deleted before a restart never has its ID given to a new one.
+ * Files from before tasks had IDs are numbered once on load and written back with the IDs.
+ * With write-behind enabled, mutations only mark the storage dirty and a single
+ * background writer flushes them once commands have been quiet for a short while.
  */
 public class Storage {
+    /** On-disk format used when writing snapshots. */
+    public enum Format { TEXT, BINARY }
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String SET_ASIDE_SUFFIX = ".mapped";
+    private static final String SEQ_HEADER = "# seq ";
+    private static final String LAST_ID_HEADER = "# last-id ";
+    private static final int DEFAULT_COMPACT_RECORDS = 1000;
+    private static final long DEFAULT_COMPACT_BYTES = 1L << 20;
+    private static final int MAX_WRITE_BEHIND_FACTOR = 10;
+    private static final int PARALLEL_LOAD_BYTES = 1 << 20;
+
     private final Path FILE;
+    private final Path JOURNAL;
+    private final boolean isJournaling;
+
+    private long seq;
+    private long lastId; // highest task ID handed out so far, kept even after that task is deleted
+    private int journalRecords;
+    private long journalBytes;
+    private int compactAfterRecords = DEFAULT_COMPACT_RECORDS;
+    private long compactAfterBytes = DEFAULT_COMPACT_BYTES;
+    private boolean isCompacting;
+    private long snapshotGeneration; // number given to the most recently taken snapshot
+    private long installedGeneration; // number of the snapshot now in place on disk
+    private String backgroundError;
+    private ScheduledExecutorService background;
+    private Format format = Format.TEXT;
+    private boolean isLazy;
+    private boolean isColumnar;
+    private volatile boolean isMapped; // the list from the last load maps FILE
+
+    private long writeBehindMillis;
+    private final List<String> pendingRecords = new ArrayList<>();
+    private List<Task> pendingSnapshot;
+    private ScheduledFuture<?> pendingFlush;
+    private long firstPendingAt;
+
+    private int batchDepth;
+    private boolean isBatchDirty;
 
     /**
      * Creates a Storage instance with "data/xiaobai.txt".
@@ -43,8 +116,32 @@ public class Storage {
      * @param path Path object.
      */
     public Storage(Path path) {
+        this(path, false);
+    }
+
+    /**
+     * Creates a Storage instance with the specified file path string,
+     * optionally recording mutations in a journal instead of rewriting the file.
+     *
+     * @param pathStr File path.
+     * @param isJournaling Whether mutations are appended to a journal.
+     */
+    public Storage(String pathStr, boolean isJournaling) {
+        this(FILE_FROM(pathStr), isJournaling);
+    }
+
+    /**
+     * Creates a Storage instance with the specified Path,
+     * optionally recording mutations in a journal instead of rewriting the file.
+     *
+     * @param path Path object.
+     * @param isJournaling Whether mutations are appended to a journal.
+     */
+    public Storage(Path path, boolean isJournaling) {
         assert path != null : "Path must not be null";
         this.FILE = path;
+        this.JOURNAL = path.resolveSibling(path.getFileName() + JOURNAL_SUFFIX);
+        this.isJournaling = isJournaling;
     }
 
     private static Path FILE_DEFAULT() {
@@ -58,6 +155,68 @@ public class Storage {
         return Paths.get(p);
     }
 
+    /**
+     * Sets how large the journal may grow before it is folded into a fresh snapshot.
+     * Compaction runs on a background thread once either limit is reached.
+     *
+     * @param maxRecords Maximum number of journal records.
+     * @param maxBytes Maximum journal size in bytes.
+     */
+    public synchronized void setCompactionThreshold(int maxRecords, long maxBytes) {
+        assert maxRecords > 0 : "Record threshold must be positive";
+        assert maxBytes > 0 : "Byte threshold must be positive";
+        this.compactAfterRecords = maxRecords;
+        this.compactAfterBytes = maxBytes;
+    }
+
+    /**
+     * Sets the format used for snapshots written from now on.
+     * Loading detects the format of the existing file regardless of this setting.
+     *
+     * @param format Snapshot format.
+     */
+    public synchronized void setFormat(Format format) {
+        assert format != null : "Format must not be null";
+        this.format = format;
+    }
+
+    /**
+     * Makes {@link #load(Ui)} map binary snapshots into memory and decode tasks on demand,
+     * instead of materializing every task up front. Text snapshots are always loaded eagerly.
+     *
+     * @param isLazy Whether binary snapshots are loaded lazily.
+     */
+    public synchronized void setLazyLoading(boolean isLazy) {
+        this.isLazy = isLazy;
+    }
+
+    /**
+     * Makes {@link #load(Ui)} keep the tasks it reads in a {@link ColumnarTaskList},
+     * which holds them in primitive columns instead of one object per task.
+     * Lazily loaded binary snapshots are mapped as before.
+     *
+     * @param isColumnar Whether loaded tasks are stored column by column.
+     */
+    public synchronized void setColumnar(boolean isColumnar) {
+        this.isColumnar = isColumnar;
+    }
+
+    /**
+     * Defers writes until no mutation has arrived for the given quiet period,
+     * so a burst of commands is persisted with a single write.
+     * A continuous stream of mutations is still flushed at least every ten quiet periods.
+     * Pass 0 to write synchronously again.
+     *
+     * @param quietMillis Quiet period in milliseconds.
+     */
+    public synchronized void setWriteBehind(long quietMillis) {
+        assert quietMillis >= 0 : "Quiet period must not be negative";
+        this.writeBehindMillis = quietMillis;
+        if (quietMillis == 0) {
+            flushPending();
+        }
+    }
+
     /**
      * Loads tasks, returns an empty list if file does not exist.
      * Skips corrupted lines.
@@ -67,30 +226,48 @@ public class Storage {
      */
     public List<Task> load(Ui ui) {
         assert FILE != null : "File path must not be null";
-        List<Task> tasks = new ArrayList<>();
+        List<Task> tasks = isColumnar ? new ColumnarTaskList() : new ArrayList<>();
 
         try {
             if (FILE.getParent() != null) {
                 Files.createDirectories(FILE.getParent());
             }
-            if (!Files.exists(FILE)) {
-                return tasks;
-            }
-
+            isMapped = false;
+            restoreSetAside();
             int corrupted = 0;
-            try (BufferedReader br = Files.newBufferedReader(FILE, StandardCharsets.UTF_8)) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty()) continue;
-
-                    Task t = parseLine(line);
-                    if (t != null) {
-                        tasks.add(t);
-                    } else {
-                        corrupted++;
-                    }
+            long[] header = new long[2]; // sequence number and last ID from the snapshot header
+            if (isLazy && Files.exists(FILE) && BinaryFormat.isBinary(FILE)) {
+                MappedTaskList mapped = MappedTaskList.open(FILE);
+                isMapped = true;
+                tasks = mapped;
+                corrupted += mapped.getCorrupted();
+                header[0] = mapped.getSeq();
+                header[1] = mapped.getLastId();
+            } else if (Files.exists(FILE) && BinaryFormat.isBinary(FILE)) {
+                corrupted += loadBinary(tasks, header);
+            } else if (Files.exists(FILE)) {
+                corrupted += loadText(tasks, header);
+            }
+            boolean isRenumbered;
+            synchronized (this) {
+                seq = header[0];
+                lastId = header[1];
+                journalRecords = 0;
+                journalBytes = 0;
+                // Number the snapshot before the journal, as the session that wrote the journal did.
+                isRenumbered = assignMissingIds(tasks);
+                if (isJournaling && Files.exists(JOURNAL)) {
+                    corrupted += replayJournal(tasks, header[0]);
+                    journalBytes = Files.size(JOURNAL);
+                    isRenumbered |= assignMissingIds(tasks);
                 }
+                noteLastId(tasks);
+                if (!isRenumbered && needsCompaction()) {
+                    scheduleCompaction(tasks);
+                }
+            }
+            if (isRenumbered) {
+                save(tasks, ui); // write the IDs back, so the next load does not number the tasks again
             }
 
             if (corrupted > 0 && ui != null) {
@@ -107,38 +284,852 @@ public class Storage {
         return tasks;
     }
 
+    /**
+     * Returns the highest task ID handed out so far, including IDs of tasks deleted since.
+     * Read from the snapshot header and the journal on load, and kept up to date by every save,
+     * so a restarted task list never gives a deleted task's ID to a new task.
+     *
+     * @return Highest task ID, or 0 if no task was ever saved.
+     */
+    public synchronized long getLastId() {
+        return lastId;
+    }
+
     /**
      * Saves tasks to disk.
      * Creates parent directories if they do not exist.
+     * The file is written to a temporary file, synced and renamed over the old one,
+     * so a crash mid-save never leaves a truncated file behind.
+     * In journal mode, the journal is discarded since the snapshot now holds every mutation.
      * Prints an error message if saving fails.
      *
      * @param tasks Task list.
      * @param ui User interface.
      */
-    public void save(List<Task> tasks, Ui ui) {
+    public synchronized void save(List<Task> tasks, Ui ui) {
         assert tasks != null : "Tasks list must not be null";
         assert FILE != null : "File path must not be null";
+        reportBackgroundError(ui);
+        noteLastId(tasks);
+        if (batchDepth > 0) {
+            isBatchDirty = true;
+            return;
+        }
+        cancelPendingFlush();
+        pendingRecords.clear(); // the snapshot below supersedes them
+        pendingSnapshot = null;
         try {
-            if (FILE.getParent() != null) {
-                Files.createDirectories(FILE.getParent());
+            writeSnapshot(forWriting(tasks), seq, lastId, ++snapshotGeneration);
+            if (isJournaling) {
+                Files.deleteIfExists(JOURNAL);
+                journalRecords = 0;
+                journalBytes = 0;
+            }
+        } catch (IOException e) {
+            if (ui != null) {
+                ui.printErrorBox("(>_<) Failed to save tasks: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Persists a single mutation.
+     * In journal mode, appends the entry to the journal, which costs O(1) regardless of list size,
+     * and starts a background compaction once the journal crosses the configured threshold.
+     * Otherwise falls back to rewriting the whole file with {@link #save(List, Ui)}.
+     * With write-behind enabled, the write is deferred to the background writer.
+     *
+     * @param entry Journal entry describing the mutation.
+     * @param tasks Task list after the mutation.
+     * @param ui User interface.
+     */
+    public synchronized void append(String entry, List<Task> tasks, Ui ui) {
+        assert entry != null : "Journal entry must not be null";
+        assert tasks != null : "Tasks list must not be null";
+        reportBackgroundError(ui);
+        noteLastId(tasks);
+        if (batchDepth > 0) {
+            isBatchDirty = true;
+            return;
+        }
+        if (!isJournaling) {
+            if (writeBehindMillis > 0) {
+                pendingSnapshot = copyOf(tasks);
+                scheduleFlush();
+            } else {
+                save(tasks, ui);
+            }
+            return;
+        }
+
+        String record = ++seq + " | " + entry;
+        journalRecords++;
+        journalBytes += record.length() + 1;
+        if (writeBehindMillis > 0) {
+            pendingRecords.add(record);
+            scheduleFlush();
+        } else {
+            try {
+                writeJournal(List.of(record));
+            } catch (IOException e) {
+                if (ui != null) {
+                    ui.printErrorBox("(>_<) Failed to save tasks: " + e.getMessage());
+                }
+            }
+        }
+        if (needsCompaction()) {
+            scheduleCompaction(tasks);
+        }
+    }
+
+    /**
+     * Starts a batch. Until the matching {@link #endBatch(List, Ui)}, saves and appends
+     * only note that the tasks changed, and nothing is written to disk.
+     * Batches may be nested; only the outermost one writes.
+     */
+    public synchronized void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch. When the outermost batch ends and any task changed during it,
+     * the tasks are written with a single {@link #save(List, Ui)}.
+     *
+     * @param tasks Task list after the batch.
+     * @param ui User interface.
+     */
+    public synchronized void endBatch(List<Task> tasks, Ui ui) {
+        assert tasks != null : "Tasks list must not be null";
+        assert batchDepth > 0 : "endBatch called without beginBatch";
+        if (--batchDepth > 0 || !isBatchDirty) {
+            return;
+        }
+        isBatchDirty = false;
+        save(tasks, ui);
+    }
+
+    /**
+     * Writes any deferred mutations to disk immediately.
+     *
+     * @param ui User interface.
+     */
+    public synchronized void flush(Ui ui) {
+        cancelPendingFlush();
+        flushPending();
+        reportBackgroundError(ui);
+    }
+
+    /**
+     * Flushes deferred mutations, waits for any background compaction to finish
+     * and stops the background thread.
+     */
+    public void close() {
+        ScheduledExecutorService ex;
+        synchronized (this) {
+            flush(null);
+            ex = background;
+            background = null;
+        }
+        if (ex == null) return;
+        ex.shutdown();
+        try {
+            ex.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Journal entries:
+
+    /** Returns the journal entry for adding the given task to the end of the list. */
+    public static String addEntry(Task t) {
+        assert t != null : "Task must not be null";
+        return "ADD | " + serialize(t);
+    }
+
+    /** Returns the journal entry for deleting the task at the given 1-based index. */
+    public static String deleteEntry(int index1Based) {
+        assert index1Based > 0 : "Index must be positive";
+        return "DELETE | " + index1Based;
+    }
+
+    /** Returns the journal entry for marking the task at the given 1-based index as done. */
+    public static String markEntry(int index1Based) {
+        assert index1Based > 0 : "Index must be positive";
+        return "MARK | " + index1Based;
+    }
+
+    /** Returns the journal entry for marking the task at the given 1-based index as not done. */
+    public static String unmarkEntry(int index1Based) {
+        assert index1Based > 0 : "Index must be positive";
+        return "UNMARK | " + index1Based;
+    }
+
+    /** Returns the journal entry for deleting the tasks at the given sorted 1-based indexes. */
+    public static String deleteEntry(int[] positions) {
+        return "DELETE | " + formatPositions(positions);
+    }
+
+    /** Returns the journal entry for marking the tasks at the given sorted 1-based indexes as done. */
+    public static String markEntry(int[] positions) {
+        return "MARK | " + formatPositions(positions);
+    }
+
+    /** Returns the journal entry for marking the tasks at the given sorted 1-based indexes as not done. */
+    public static String unmarkEntry(int[] positions) {
+        return "UNMARK | " + formatPositions(positions);
+    }
+
+    /** Returns the journal entry for removing every task. */
+    public static String clearEntry() {
+        return "CLEAR";
+    }
+
+    // Helpers:
+
+    private int replayJournal(List<Task> tasks, long snapshotSeq) throws IOException {
+        assert tasks != null : "Tasks list must not be null";
+        int corrupted = 0;
+        DescriptionPool.Batch descriptions = new DescriptionPool.Batch();
+        try (BufferedReader br = Files.newBufferedReader(JOURNAL, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                long recordSeq = recordSeq(line);
+                if (recordSeq <= 0) {
+                    corrupted++;
+                    continue;
+                }
+                if (recordSeq <= seq) {
+                    continue; // already folded into the snapshot, or written twice by a retried flush
+                }
+                seq = recordSeq;
+                journalRecords++;
+                if (!applyEntry(line.substring(line.indexOf('|') + 1).trim(), tasks, descriptions)) {
+                    corrupted++;
+                }
             }
-            try (BufferedWriter bw = Files.newBufferedWriter(FILE, StandardCharsets.UTF_8)) {
+        }
+        return corrupted;
+    }
+
+    /**
+     * Reads a text snapshot into the list.
+     * Large files are split into newline-aligned chunks that are parsed in parallel
+     * on the common fork-join pool, then reassembled in their original order.
+     */
+    private int loadText(List<Task> tasks, long[] header) throws IOException {
+        byte[] bytes = Files.readAllBytes(FILE);
+        int chunkCount = 1;
+        if (bytes.length >= PARALLEL_LOAD_BYTES) {
+            int byParallelism = ForkJoinPool.getCommonPoolParallelism() * 4;
+            int bySize = bytes.length / (PARALLEL_LOAD_BYTES / 4);
+            chunkCount = Math.max(1, Math.min(byParallelism, bySize));
+        }
+
+        if (chunkCount == 1) {
+            return mergeChunk(parseChunk(bytes, 0, bytes.length), tasks, header);
+        }
+
+        List<ForkJoinTask<Chunk>> jobs = new ArrayList<>(chunkCount);
+        int from = 0;
+        for (int i = 1; i <= chunkCount && from < bytes.length; i++) {
+            int to = i == chunkCount ? bytes.length : nextLineStart(bytes, (int) ((long) bytes.length * i / chunkCount));
+            if (to <= from) continue;
+            int start = from;
+            jobs.add(ForkJoinPool.commonPool().submit(() -> parseChunk(bytes, start, to)));
+            from = to;
+        }
+        int corrupted = 0;
+        for (ForkJoinTask<Chunk> job : jobs) {
+            corrupted += mergeChunk(job.join(), tasks, header);
+        }
+        return corrupted;
+    }
+
+    private static int nextLineStart(byte[] bytes, int pos) {
+        while (pos < bytes.length && bytes[pos - 1] != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int mergeChunk(Chunk chunk, List<Task> tasks, long[] header) {
+        tasks.addAll(chunk.tasks);
+        if (chunk.seq >= 0) {
+            header[0] = chunk.seq;
+        }
+        if (chunk.lastId >= 0) {
+            header[1] = chunk.lastId;
+        }
+        return chunk.corrupted;
+    }
+
+    /**
+     * Parses the lines in bytes[from, to). UTF-8 never uses the newline byte inside
+     * a multi-byte character, so splitting on it is safe.
+     */
+    private static Chunk parseChunk(byte[] bytes, int from, int to) {
+        Chunk chunk = new Chunk();
+        DescriptionPool.Batch descriptions = new DescriptionPool.Batch();
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && bytes[i] != '\n') continue;
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+            lineStart = i + 1;
+            if (line.isEmpty()) continue;
+            if (line.startsWith(SEQ_HEADER)) {
+                chunk.seq = parseHeader(line, SEQ_HEADER);
+                continue;
+            }
+            if (line.startsWith(LAST_ID_HEADER)) {
+                chunk.lastId = parseHeader(line, LAST_ID_HEADER);
+                continue;
+            }
+
+            Task t = parseLine(line, descriptions);
+            if (t != null) {
+                chunk.tasks.add(t);
+            } else {
+                chunk.corrupted++;
+            }
+        }
+        return chunk;
+    }
+
+    /** Tasks parsed from one chunk of a text snapshot. */
+    private static final class Chunk {
+        private final List<Task> tasks = new ArrayList<>();
+        private int corrupted;
+        private long seq = -1;
+        private long lastId = -1;
+    }
+
+    /**
+     * Reads a binary snapshot into the list.
+     * A truncated or corrupted record ends the load, counting the unread tasks as corrupted.
+     */
+    private int loadBinary(List<Task> tasks, long[] header) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(FILE), 1 << 16))) {
+            BinaryFormat.Reader reader = new BinaryFormat.Reader(in);
+            reader.readHeader();
+            header[0] = reader.getSeq();
+            header[1] = reader.getLastId();
+            int count = reader.getCount();
+            if (tasks instanceof ArrayList) {
+                ((ArrayList<Task>) tasks).ensureCapacity(count);
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    tasks.add(reader.readTask());
+                } catch (IOException | RuntimeException e) {
+                    return count - i; // truncated or corrupted from here on
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Numbers the tasks 1 to n, in list order, unless their IDs are already positive and increasing.
+     * Only files written before tasks had IDs, or damaged ones, need this.
+     * A mapped list numbers records without an ID itself, so it is left as it is.
+     *
+     * @return Whether the tasks were numbered.
+     */
+    private static boolean assignMissingIds(List<Task> tasks) {
+        if (tasks instanceof MappedTaskList) {
+            return false;
+        }
+        if (tasks instanceof ColumnarTaskList) {
+            return ((ColumnarTaskList) tasks).assignIds();
+        }
+        long prev = 0;
+        boolean isOrdered = true;
+        for (Task t : tasks) {
+            if (t.getId() <= prev) {
+                isOrdered = false;
+                break;
+            }
+            prev = t.getId();
+        }
+        if (isOrdered) {
+            return false;
+        }
+        long id = 0;
+        for (Task t : tasks) {
+            t.setId(++id);
+        }
+        return true;
+    }
+
+    /** Raises the last ID to that of the list's last task, which has the largest ID in the list. */
+    private void noteLastId(List<Task> tasks) {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        if (!tasks.isEmpty()) {
+            lastId = Math.max(lastId, tasks.get(tasks.size() - 1).getId());
+        }
+    }
+
+    private static long recordSeq(String record) {
+        int sep = record.indexOf('|');
+        if (sep < 0) return -1;
+        try {
+            return Long.parseLong(record.substring(0, sep).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseHeader(String line, String header) {
+        try {
+            return Long.parseLong(line.substring(header.length()).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean needsCompaction() {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        return isJournaling && !isCompacting
+                && (journalRecords >= compactAfterRecords || journalBytes >= compactAfterBytes);
+    }
+
+    /**
+     * Copies the list on the caller's thread, then writes it out as a new snapshot
+     * on the background thread. Records appended meanwhile carry a higher sequence
+     * number than the snapshot and survive the journal truncation.
+     */
+    private void scheduleCompaction(List<Task> tasks) {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        List<Task> snapshot = copyOf(tasks);
+        long snapshotSeq = seq;
+        long snapshotLastId = lastId;
+        long generation = ++snapshotGeneration;
+        isCompacting = true;
+        background().execute(() -> compact(snapshot, snapshotSeq, snapshotLastId, generation));
+    }
+
+    private ScheduledExecutorService background() {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        if (background == null) {
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "xiaobai-storage");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return background;
+    }
+
+    /**
+     * (Re)starts the quiet-period timer, without pushing the flush past
+     * the maximum delay measured from the oldest pending mutation.
+     */
+    private void scheduleFlush() {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        long now = System.currentTimeMillis();
+        if (firstPendingAt == 0) {
+            firstPendingAt = now;
+        }
+        long deadline = firstPendingAt + writeBehindMillis * MAX_WRITE_BEHIND_FACTOR;
+        long delay = Math.max(0, Math.min(writeBehindMillis, deadline - now));
+        cancelPendingFlush();
+        pendingFlush = background().schedule(this::flushPending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPendingFlush() {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+
+    private synchronized void flushPending() {
+        pendingFlush = null;
+        firstPendingAt = 0;
+        try {
+            if (pendingSnapshot != null) {
+                writeSnapshot(pendingSnapshot, seq, lastId, ++snapshotGeneration);
+                pendingSnapshot = null;
+            }
+            if (!pendingRecords.isEmpty()) {
+                writeJournal(pendingRecords);
+                pendingRecords.clear();
+            }
+        } catch (IOException e) {
+            // Keep the pending writes; the next flush retries them.
+            backgroundError = "(>_<) Failed to save tasks: " + e.getMessage();
+        }
+    }
+
+    private void writeJournal(List<String> records) throws IOException {
+        if (JOURNAL.getParent() != null) {
+            Files.createDirectories(JOURNAL.getParent());
+        }
+        try (BufferedWriter bw = Files.newBufferedWriter(JOURNAL, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String record : records) {
+                bw.write(record);
+                bw.newLine();
+            }
+        }
+    }
+
+    private void compact(List<Task> snapshot, long snapshotSeq, long snapshotLastId, long generation) {
+        try {
+            if (writeSnapshot(snapshot, snapshotSeq, snapshotLastId, generation)) {
+                synchronized (this) {
+                    truncateJournal(snapshotSeq);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                backgroundError = "(>_<) Failed to compact saved tasks: " + e.getMessage();
+            }
+        } finally {
+            synchronized (this) {
+                isCompacting = false;
+            }
+        }
+    }
+
+    private void truncateJournal(long snapshotSeq) throws IOException {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        if (!Files.exists(JOURNAL)) return;
+        List<String> kept = new ArrayList<>();
+        long keptBytes = 0;
+        try (BufferedReader br = Files.newBufferedReader(JOURNAL, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (recordSeq(line.trim()) > snapshotSeq) {
+                    kept.add(line);
+                    keptBytes += line.length() + 1;
+                }
+            }
+        }
+        Path tmp = tempFileFor(JOURNAL);
+        try {
+            writeDurably(tmp, kept);
+            moveAtomically(tmp, JOURNAL);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        journalRecords = kept.size();
+        journalBytes = keptBytes;
+    }
+
+    /**
+     * Writes the tasks to a temporary file, then renames it over the snapshot unless
+     * a snapshot taken later is already in place.
+     * Called with the storage lock held, except by compaction, which only takes it for the rename.
+     *
+     * @return Whether the snapshot was renamed into place.
+     */
+    private boolean writeSnapshot(List<Task> tasks, long snapshotSeq, long snapshotLastId, long generation)
+            throws IOException {
+        Path tmp = tempFileFor(FILE);
+        try {
+            writeSnapshotTo(tmp, tasks, snapshotSeq, snapshotLastId);
+            synchronized (this) {
+                if (generation < installedGeneration) {
+                    return false; // superseded while it was being written
+                }
+                installSnapshot(tmp);
+                installedGeneration = generation;
+                return true;
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeSnapshotTo(Path tmp, List<Task> tasks, long snapshotSeq, long snapshotLastId)
+            throws IOException {
+        if (format == Format.BINARY) {
+            writeDurably(tmp, os -> {
+                DataOutputStream out = new DataOutputStream(os);
+                BinaryFormat.writeHeader(out, snapshotSeq, tasks.size(), snapshotLastId);
+                if (tasks instanceof MappedTaskList.Snapshot) {
+                    ((MappedTaskList.Snapshot) tasks).writeRecords(out);
+                } else {
+                    for (Task t : tasks) {
+                        BinaryFormat.writeTask(out, t);
+                    }
+                }
+                out.flush();
+            });
+        } else {
+            writeDurably(tmp, os -> {
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                if (isJournaling) {
+                    bw.write(SEQ_HEADER + snapshotSeq);
+                    bw.newLine();
+                }
+                if (snapshotLastId > 0) {
+                    bw.write(LAST_ID_HEADER + snapshotLastId);
+                    bw.newLine();
+                }
                 for (Task t : tasks) {
                     assert t != null : "Task must not be null";
                     bw.write(serialize(t));
                     bw.newLine();
                 }
+                bw.flush();
+            });
+        }
+    }
+
+    /**
+     * Copies the tasks for a write that happens later. A memory-mapped list only copies its record numbers,
+     * so it stays lazy.
+     */
+    private static List<Task> copyOf(List<Task> tasks) {
+        return tasks instanceof TaskList.WriterView ? ((TaskList.WriterView) tasks).copy() : new ArrayList<>(tasks);
+    }
+
+    /** Returns the tasks to write now: a memory-mapped list is written from a snapshot, copying its records as is. */
+    private static List<Task> forWriting(List<Task> tasks) {
+        boolean isMappedView = tasks instanceof TaskList.WriterView && ((TaskList.WriterView) tasks).isMapped();
+        return isMappedView ? ((TaskList.WriterView) tasks).copy() : tasks;
+    }
+
+    /**
+     * Renames the written snapshot over the old one.
+     * Windows refuses to replace a file that is memory-mapped, but lets it be renamed, so if the list maps
+     * the old snapshot and the rename fails, the old snapshot is first moved aside. The list keeps reading
+     * from it there; it is deleted once nothing maps it, at the latest on the next load.
+     */
+    private void installSnapshot(Path tmp) throws IOException {
+        try {
+            moveAtomically(tmp, FILE);
+            return;
+        } catch (IOException e) {
+            if (!isMapped || !Files.exists(FILE)) {
+                throw e;
             }
+        }
+        Path aside = Files.createTempFile(FILE.toAbsolutePath().getParent(), FILE.getFileName() + ".",
+                SET_ASIDE_SUFFIX);
+        moveAtomically(FILE, aside);
+        moveAtomically(tmp, FILE);
+        try {
+            Files.deleteIfExists(aside);
         } catch (IOException e) {
-            if (ui != null) {
-                ui.printErrorBox("(>_<) Failed to save tasks: " + e.getMessage());
+            // still mapped; the next load deletes it
+        }
+    }
+
+    /**
+     * Deletes snapshots moved aside by {@link #installSnapshot(Path)}. If the process died between moving
+     * the old snapshot aside and renaming the new one into place, the newest one set aside is put back.
+     */
+    private void restoreSetAside() throws IOException {
+        Path dir = FILE.toAbsolutePath().getParent();
+        String prefix = FILE.getFileName() + ".";
+        List<Path> aside = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + SET_ASIDE_SUFFIX)) {
+            files.forEach(aside::add);
+        }
+        if (aside.isEmpty()) {
+            return;
+        }
+        aside.sort(Comparator.comparing(Storage::lastModified));
+        if (!Files.exists(FILE)) {
+            moveAtomically(aside.remove(aside.size() - 1), FILE);
+        }
+        for (Path p : aside) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                // mapped by a list that is still open
             }
         }
     }
 
-    // Helpers:
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /** Creates an empty temporary file next to the target, unique to this write. */
+    private static Path tempFileFor(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, target.getFileName() + ".", TMP_SUFFIX);
+    }
+
+    private static void writeDurably(Path path, List<String> lines) throws IOException {
+        writeDurably(path, os -> {
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+            for (String line : lines) {
+                bw.write(line);
+                bw.newLine();
+            }
+            bw.flush();
+        });
+    }
+
+    /**
+     * Writes the file through the given writer and syncs it to disk before returning.
+     */
+    private static void writeDurably(Path path, ContentWriter writer) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream os = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16)) {
+            writer.write(os);
+            os.flush();
+            ch.force(true);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void write(OutputStream os) throws IOException;
+    }
+
+    private static void moveAtomically(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void reportBackgroundError(Ui ui) {
+        assert Thread.holdsLock(this) : "Caller must hold the storage lock";
+        if (backgroundError != null && ui != null) {
+            ui.printErrorBox(backgroundError);
+        }
+        backgroundError = null;
+    }
+
+    private boolean applyEntry(String entry, List<Task> tasks, DescriptionPool.Batch descriptions) {
+        assert entry != null : "Journal entry must not be null";
+        if (entry.equals("CLEAR")) {
+            tasks.clear();
+            return true;
+        }
+        int sep = entry.indexOf('|');
+        if (sep < 0) return false;
+        String op = entry.substring(0, sep).trim();
+        String arg = entry.substring(sep + 1).trim();
+
+        if (op.equals("ADD")) {
+            Task t = parseLine(arg, descriptions);
+            if (t == null) return false;
+            tasks.add(t);
+            lastId = Math.max(lastId, t.getId()); // the task may be deleted later in the journal
+            return true;
+        }
+
+        int[] positions = parsePositions(arg, tasks.size());
+        if (positions == null) return false;
+
+        switch (op) {
+        case "DELETE":
+            for (int i = 0; i < positions.length; i++) {
+                positions[i]--;
+            }
+            TaskList.removePositions(tasks, positions);
+            return true;
+        case "MARK":
+        case "UNMARK":
+            for (int index : positions) {
+                Task t = tasks.get(index - 1);
+                if (op.equals("MARK")) {
+                    t.markAsDone();
+                } else {
+                    t.markAsNotDone();
+                }
+                tasks.set(index - 1, t);
+            }
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Writes sorted positions compactly, collapsing runs into ranges: "1,4,10-5000". */
+    private static String formatPositions(int[] positions) {
+        assert positions != null && positions.length > 0 : "Positions must not be empty";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < positions.length; i++) {
+            int from = positions[i];
+            while (i + 1 < positions.length && positions[i + 1] == positions[i] + 1) {
+                i++;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(from);
+            if (positions[i] != from) {
+                sb.append('-').append(positions[i]);
+            }
+        }
+        return sb.toString();
+    }
 
-    private Task parseLine(String line) {
+    /**
+     * Parses positions written by {@link #formatPositions(int[])}.
+     * Returns null if the text is malformed, the positions are not increasing, or one is out of range.
+     */
+    private static int[] parsePositions(String arg, int size) {
+        IntList positions = new IntList();
+        try {
+            for (String item : arg.split(",")) {
+                int dash = item.indexOf('-');
+                int from = Integer.parseInt((dash < 0 ? item : item.substring(0, dash)).trim());
+                int to = dash < 0 ? from : Integer.parseInt(item.substring(dash + 1).trim());
+                if (from < 1 || to < from || to > size
+                        || (!positions.isEmpty() && from <= positions.last())) {
+                    return null;
+                }
+                for (int p = from; p <= to; p++) {
+                    positions.add(p);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return positions.toArray();
+    }
+
+    /**
+     * Parses a saved line, which may start with the task ID as "#<id> | ".
+     * Lines without an ID come from older files; {@link #load(Ui)} numbers them.
+     */
+    private static Task parseLine(String line, DescriptionPool.Batch descriptions) {
+        assert line != null : "Line must not be null";
+        long id = 0;
+        if (line.startsWith("#")) {
+            int sep = line.indexOf('|');
+            if (sep < 0) return null;
+            try {
+                id = Long.parseLong(line.substring(1, sep).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (id <= 0) return null;
+            line = line.substring(sep + 1).trim();
+        }
+        Task t = parseTask(line, descriptions);
+        if (t != null && id > 0) {
+            t.setId(id);
+        }
+        return t;
+    }
+
+    private static Task parseTask(String line, DescriptionPool.Batch descriptions) {
         assert line != null : "Line must not be null";
         String[] parts = line.split("\\s*\\|\\s*");
         try {
@@ -148,14 +1139,14 @@ public class Storage {
 
                 switch (type) {
                 case "T": {
-                    String desc = parts[2];
+                    String desc = descriptions.intern(parts[2]);
                     Task t = new Todo(desc);
                     if (isDone) t.markAsDone();
                     return t;
                 }
                 case "D": {
                     if (parts.length < 4) return null;
-                    String desc = parts[2];
+                    String desc = descriptions.intern(parts[2]);
                     String iso = parts[3];
                     Deadline d = new Deadline(desc, DateTimeUtil.fromIso(iso));
                     if (isDone) d.markAsDone();
@@ -163,7 +1154,7 @@ public class Storage {
                 }
                 case "E": {
                     if (parts.length < 5) return null;
-                    String desc = parts[2];
+                    String desc = descriptions.intern(parts[2]);
                     String isoStart = parts[3];
                     String isoEnd = parts[4];
                     Event e = new Event(desc,
@@ -229,62 +1220,20 @@ public class Storage {
         }
     }
 
-    private String serialize(Task t) {
+    private static String serialize(Task t) {
         assert t != null : "Task must not be null";
-        boolean isDone = t.getStatusIcon().contains("X");
-        String done = isDone ? "1" : "0";
+        String done = t.isDone ? "1" : "0";
+        String prefix = t.getId() > 0 ? "#" + t.getId() + " | " : "";
 
-        if (t instanceof Todo) {
-            String desc = stripStatus(stripPrefix(t.toString(), "[T]").trim());
-            return String.join(" | ", "T", done, desc);
-        } else if (t instanceof Deadline) {
+        if (t instanceof Deadline) {
             Deadline d = (Deadline) t;
-            String desc = stripStatus(stripPrefix(d.toString(), "[D]").trim());
-            String iso = DateTimeUtil.toIso(d.getBy());
-            int idx = desc.lastIndexOf("(by:");
-            if (idx >= 0) desc = desc.substring(0, idx).trim();
-            return String.join(" | ", "D", done, desc, iso);
+            return prefix + String.join(" | ", "D", done, d.description, DateTimeUtil.toIso(d.getBy()));
         } else if (t instanceof Event) {
             Event e = (Event) t;
-            String desc = stripStatus(stripPrefix(e.toString(), "[E]").trim());
-            String isoStart = DateTimeUtil.toIso(e.getStart());
-            String isoEnd = DateTimeUtil.toIso(e.getEnd());
-            int idx = desc.lastIndexOf("(from:");
-            if (idx >= 0) desc = desc.substring(0, idx).trim();
-            return String.join(" | ", "E", done, desc, isoStart, isoEnd);
+            return prefix + String.join(" | ", "E", done, e.description,
+                    DateTimeUtil.toIso(e.getStart()), DateTimeUtil.toIso(e.getEnd()));
         } else {
-            return "T | " + done + " | " + t.toString();
+            return prefix + String.join(" | ", "T", done, t.description);
         }
     }
-
-    private String stripPrefix(String s, String prefix) {
-        assert s != null : "String must not be null";
-        assert prefix != null : "Prefix must not be null";
-        return s.startsWith(prefix) ? s.substring(prefix.length()) : s;
-    }
-
-    private String stripStatus(String s) {
-        assert s != null : "String must not be null";
-        if (s.startsWith("[X] ")) return s.substring(4);
-        if (s.startsWith("[ ] ")) return s.substring(4);
-        return s;
-    }
-
-    private String extractSuffix(String s, String marker) {
-        assert s != null : "String must not be null";
-        assert marker != null : "Marker must not be null";
-        int idx = s.lastIndexOf(marker);
-        if (idx < 0) return "";
-        String tail = s.substring(idx + marker.length()).trim();
-        if (tail.endsWith(")")) tail = tail.substring(0, tail.length() - 1).trim();
-        return tail;
-    }
-
-    private String removeSuffix(String s, String marker) {
-        assert s != null : "String must not be null";
-        assert marker != null : "Marker must not be null";
-        int idx = s.lastIndexOf(marker);
-        if (idx < 0) return s;
-        return s.substring(0, idx).trim();
-    }
 }
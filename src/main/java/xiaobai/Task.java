@@ -2,10 +2,13 @@ package xiaobai;
 
 /**
  * A generic task with description and completion status.
+ * Each task in a {@link TaskList} also has an ID that does not change when other tasks are deleted.
  */
 public class Task {
     protected String description;
     protected boolean isDone;
+    private long id; // 0 until assigned by a TaskList
+    private String rendered; // cached toString(), cleared when the task changes
 
     public Task(String description) {
         assert description != null : "Description must not be null";
@@ -16,14 +19,30 @@ public class Task {
 
     public void markAsDone() {
         isDone = true;
+        rendered = null;
         assert isDone : "Task should be marked as done";
     }
 
     public void markAsNotDone() {
         isDone = false;
+        rendered = null;
         assert !isDone : "Task should be marked as not done";
     }
 
+    /**
+     * Returns the task's ID, or 0 if it has not been added to a list yet.
+     *
+     * @return Task ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        assert id > 0 : "ID must be positive";
+        this.id = id;
+    }
+
     /**
      * Returns the task status icon.
      * "[X]" if done, "[ ]" if not done.
@@ -33,13 +52,30 @@ public class Task {
     }
 
     /**
-     * Returns a string representation of the task,
-     * including its status icon and description.
+     * Returns a string representation of the task.
+     * The string is built by {@link #render()} on first use and cached until the task changes,
+     * so listing the same tasks again does not reformat their dates.
      *
      * @return Formatted string representation of the task.
      */
     @Override
     public String toString() {
+        String s = rendered;
+        if (s == null) {
+            s = render();
+            rendered = s;
+        }
+        return s;
+    }
+
+    /**
+     * Builds the string representation of the task,
+     * including its status icon and description.
+     * Subclasses extend this rather than {@link #toString()}.
+     *
+     * @return Formatted string representation of the task.
+     */
+    protected String render() {
         assert description != null : "Task description must not be null";
         return getStatusIcon() + " " + description;
     }
@@ -0,0 +1,180 @@
+package xiaobai;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A gap-aware array of tasks.
+ * Removing a task leaves a gap instead of shifting the tasks after it, and a Fenwick tree
+ * over the occupied slots maps list positions to slots, so positional get, set and remove
+ * take O(log n). Gaps are squeezed out once they make up half of the array.
+ */
+class TaskArray extends AbstractList<Task> {
+    private static final int MIN_CAPACITY = 16;
+
+    private Task[] slots = new Task[MIN_CAPACITY];
+    private int[] tree = new int[MIN_CAPACITY + 1]; // Fenwick tree of occupied slots, 1-based
+    private int used; // slots handed out so far, including gaps
+    private int size;
+
+    @Override
+    public Task get(int index) {
+        return slots[slotOf(index)];
+    }
+
+    @Override
+    public Task set(int index, Task t) {
+        assert t != null : "Task must not be null";
+        int slot = slotOf(index);
+        Task old = slots[slot];
+        slots[slot] = t;
+        return old;
+    }
+
+    @Override
+    public boolean add(Task t) {
+        assert t != null : "Task must not be null";
+        if (used == slots.length) {
+            if (size < used / 2) {
+                compact();
+            } else {
+                grow();
+            }
+        }
+        slots[used] = t;
+        increment(used, 1);
+        used++;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts a task at the given position.
+     * Appending is O(1) amortized; inserting elsewhere shifts the array and costs O(n).
+     */
+    @Override
+    public void add(int index, Task t) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size) {
+            add(t);
+            return;
+        }
+        compact();
+        if (used == slots.length) {
+            grow();
+        }
+        System.arraycopy(slots, index, slots, index + 1, used - index);
+        slots[index] = t;
+        used++;
+        size++;
+        rebuildTree();
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        int slot = slotOf(index);
+        Task t = slots[slot];
+        slots[slot] = null;
+        increment(slot, -1);
+        size--;
+        modCount++;
+        if (used > MIN_CAPACITY && size < used / 2) {
+            compact();
+        }
+        return t;
+    }
+
+    /**
+     * Removes the tasks at the given positions in one pass.
+     *
+     * @param sorted Distinct 0-based positions in increasing order.
+     */
+    void removePositions(int[] sorted) {
+        int[] found = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            found[i] = slotOf(sorted[i]);
+        }
+        for (int slot : found) {
+            slots[slot] = null;
+        }
+        size -= sorted.length;
+        modCount++;
+        if (size < used / 2) {
+            compact();
+        } else {
+            rebuildTree();
+        }
+    }
+
+    @Override
+    public void clear() {
+        slots = new Task[MIN_CAPACITY];
+        tree = new int[MIN_CAPACITY + 1];
+        used = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Finds the slot holding the task at the given 0-based position. */
+    private int slotOf(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int remaining = index + 1;
+        int pos = 0;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= slots.length && tree[next] < remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return pos; // 0-based slot, since the tree is 1-based
+    }
+
+    private void increment(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void grow() {
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        rebuildTree();
+    }
+
+    /** Moves every task to the front of the array, removing the gaps. */
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < used; i++) {
+            if (slots[i] != null) {
+                slots[j++] = slots[i];
+            }
+        }
+        Arrays.fill(slots, j, used, null);
+        used = j;
+        assert used == size : "Every occupied slot must hold a task";
+        rebuildTree();
+    }
+
+    /** Rebuilds the Fenwick tree in O(n) from the occupied slots. */
+    private void rebuildTree() {
+        tree = new int[slots.length + 1];
+        for (int i = 1; i <= slots.length; i++) {
+            tree[i] += slots[i - 1] != null ? 1 : 0;
+            int parent = i + (i & -i);
+            if (parent <= slots.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -1,20 +1,39 @@
 package xiaobai;
 
+import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 /**
  * A list of tasks.
- * Supports operations: add, remove, mark, unmark, and render.
+ * Supports operations: add, remove, mark, unmark, find, on, and render.
+ * Tasks are numbered with increasing IDs as they are added, so a task can be found
+ * by ID even after the tasks before it are deleted.
+ * Safe to share between threads: mutations take a write lock, and reads first try an optimistic
+ * read that only falls back to the read lock if a write got in the way, so readers never block
+ * each other. Commands that call several methods in a row still need their own coordination,
+ * as {@link XiaoBai#getResponse(String)} does.
  */
 public class TaskList {
     private final List<Task> tasks;
+    private final StampedLock lock = new StampedLock();
+    private long lastId;
+    private long version; // bumped by every mutation, under the write lock
+    private volatile Snapshot snapshot; // last list handed out by asList()
+    private KeywordIndex index; // built on the first find
+    private DateIndex dateIndex; // built on the first on
 
     /**
      * Creates an empty TaskList.
      */
     public TaskList() {
-        this.tasks = new ArrayList<>();
+        this.tasks = new TaskArray();
         assert tasks != null : "Tasks list must not be null after initialization";
         assert tasks.isEmpty() : "New TaskList must be empty";
     }
@@ -22,21 +41,104 @@ public class TaskList {
     /**
      * Creates a TaskList with an initial list of tasks.
      * If the provided list is null, an empty list is used.
+     * A lazily loaded or columnar list from {@link Storage} is used as is rather than copied.
+     * Tasks without IDs, or with IDs out of order, are renumbered from 1.
      *
      * @param initial Initial task list.
      */
     public TaskList(List<Task> initial) {
-        this.tasks = new ArrayList<>(initial == null ? List.of() : initial);
+        if (initial instanceof MappedTaskList) {
+            this.tasks = initial;
+            this.lastId = ((MappedTaskList) initial).lastId();
+        } else if (initial instanceof ColumnarTaskList) {
+            this.tasks = initial;
+            ((ColumnarTaskList) initial).assignIds();
+            this.lastId = initial.isEmpty() ? 0 : idAt(initial.size() - 1);
+        } else {
+            this.tasks = new TaskArray();
+            if (initial != null) {
+                tasks.addAll(initial);
+            }
+            assignIds();
+        }
         assert tasks != null : "Tasks list must not be null after initialization";
     }
 
+    /**
+     * Creates a TaskList with tasks loaded from storage, which also knows the highest ID
+     * handed out before, so IDs of tasks deleted in an earlier run are not given out again.
+     *
+     * @param initial Initial task list.
+     * @param lastId Highest task ID handed out so far, as returned by {@link Storage#getLastId()}.
+     */
+    public TaskList(List<Task> initial, long lastId) {
+        this(initial);
+        this.lastId = Math.max(this.lastId, lastId);
+    }
+
+    /** Keeps loaded IDs if they increase along the list, otherwise numbers the tasks 1 to n. */
+    private void assignIds() {
+        boolean isOrdered = true;
+        long prev = 0;
+        for (Task t : tasks) {
+            if (t.getId() <= prev) {
+                isOrdered = false;
+                break;
+            }
+            prev = t.getId();
+        }
+        if (isOrdered) {
+            lastId = prev;
+            return;
+        }
+        lastId = 0;
+        for (Task t : tasks) {
+            t.setId(++lastId);
+        }
+    }
+
+    /**
+     * Runs a read without taking the read lock, and runs it again under the lock
+     * if a write happened meanwhile. The read must not loop on a half-updated list,
+     * so pointer-chasing reads such as index lookups take the read lock directly.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException | AssertionError e) {
+                // saw a write half done; read again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long beginWrite() {
+        long stamp = lock.writeLock();
+        version++;
+        return stamp;
+    }
+
+    private void endWrite(long stamp) {
+        lock.unlockWrite(stamp);
+    }
+
     /**
      * Returns the number of tasks in the list.
      *
      * @return Number of tasks.
      */
     public int size() {
-        int size = tasks.size();
+        int size = read(tasks::size);
         assert size >= 0 : "Size must not be negative";
         return size;
     }
@@ -48,31 +150,176 @@ public class TaskList {
      * @return Task at the given index.
      */
     public Task get(int index1Based) {
-        assert index1Based > 0 && index1Based <= tasks.size() : "Index out of bounds";
-        Task t = tasks.get(index1Based - 1);
+        Task t = read(() -> {
+            assert index1Based > 0 && index1Based <= tasks.size() : "Index out of bounds";
+            return tasks.get(index1Based - 1);
+        });
         assert t != null : "Retrieved task must not be null";
         return t;
     }
 
     /**
-     * Returns the internal list of tasks.
+     * Returns the 1-based position of the task with the given ID.
+     * IDs increase along the list, so this is a binary search.
+     *
+     * @param id Task ID.
+     * @return 1-based index of the task, or -1 if no task has that ID.
+     */
+    public int indexOfId(long id) {
+        return read(() -> binarySearchId(id));
+    }
+
+    private int binarySearchId(long id) {
+        int lo = 0;
+        int hi = tasks.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = idAt(mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the ID of the task at the 0-based position, without decoding it if the list stores columns. */
+    private long idAt(int index) {
+        if (tasks instanceof ColumnarTaskList) {
+            return ((ColumnarTaskList) tasks).idAt(index);
+        }
+        if (tasks instanceof MappedTaskList) {
+            return ((MappedTaskList) tasks).idAt(index);
+        }
+        return tasks.get(index).getId();
+    }
+
+    /** Returns whether a find or on index has been built, for estimating the heap the list uses. */
+    boolean isIndexed() {
+        return read(() -> index != null || dateIndex != null);
+    }
+
+    /** Returns the task with the given ID, or null if there is none. Used by the indexes. */
+    private Task taskWithId(long id) {
+        int index = binarySearchId(id);
+        return index < 0 ? null : tasks.get(index - 1);
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of which tasks are in the list, in order.
+     * Later adds and removes do not show up in the snapshot, but its elements are the
+     * live tasks rather than copies, so a later mark or unmark can be seen through them.
+     * Callers that need the done state as it was must read it before changing the list.
+     * The copy is shared by every call made between two changes, so polling an unchanged
+     * list costs nothing.
      *
-     * @return List of tasks.
+     * @return Unmodifiable list whose elements are the live tasks.
      */
     public List<Task> asList() {
-        assert tasks != null : "Tasks list must not be null";
-        return tasks;
+        long stamp = lock.readLock();
+        try {
+            Snapshot s = snapshot;
+            if (s == null || s.version != version) {
+                List<Task> copy = Arrays.asList(tasks.toArray(new Task[0]));
+                s = new Snapshot(version, Collections.unmodifiableList(copy));
+                snapshot = s;
+            }
+            return s.tasks;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
-     * Adds a task to the list.
+     * Returns a read-only view of the live list, for the command that is currently changing it,
+     * so that persisting a change does not copy the list. The view changes with the list;
+     * any other caller should use {@link #asList()}.
+     *
+     * @return Unmodifiable live view of the tasks.
+     */
+    List<Task> writerView() {
+        return new WriterView(tasks);
+    }
+
+    /**
+     * The view returned by {@link #writerView()}. Lets {@link Storage} copy the tasks for a later write
+     * without decoding a memory-mapped list.
+     */
+    static final class WriterView extends AbstractList<Task> implements RandomAccess {
+        private final List<Task> tasks;
+
+        private WriterView(List<Task> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public Task get(int index) {
+            return tasks.get(index);
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+
+        /** Returns whether the tasks are read from a memory-mapped file. */
+        boolean isMapped() {
+            return tasks instanceof MappedTaskList;
+        }
+
+        /**
+         * Returns a copy of the tasks as they are now. A mapped list copies its record numbers only.
+         *
+         * @return List that later changes do not reach.
+         */
+        List<Task> copy() {
+            return isMapped() ? ((MappedTaskList) tasks).snapshot() : new ArrayList<>(tasks);
+        }
+    }
+
+    /** Tasks copied out by {@link #asList()}, and the version of the list they were copied from. */
+    private static final class Snapshot {
+        private final long version;
+        private final List<Task> tasks;
+
+        Snapshot(long version, List<Task> tasks) {
+            this.version = version;
+            this.tasks = tasks;
+        }
+    }
+
+    /**
+     * Adds a task to the end of the list, giving it the next ID if it has none.
      *
      * @param t Task to add.
      */
     public void add(Task t) {
         assert t != null : "Task to add must not be null";
+        long stamp = beginWrite();
+        try {
+            addLocked(t);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private void addLocked(Task t) {
+        if (t.getId() > lastId) {
+            lastId = t.getId(); // replayed from the journal with its saved ID
+        } else {
+            t.setId(++lastId);
+        }
         int oldSize = tasks.size();
         tasks.add(t);
+        if (index != null) {
+            index.add(t);
+        }
+        if (dateIndex != null) {
+            dateIndex.add(t);
+        }
         assert tasks.size() == oldSize + 1 : "Size must increase after add";
     }
 
@@ -83,14 +330,202 @@ public class TaskList {
      * @return Removed task.
      */
     public Task remove(int index1Based) {
+        long stamp = beginWrite();
+        try {
+            return removeLocked(index1Based);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private Task removeLocked(int index1Based) {
         assert index1Based > 0 && index1Based <= tasks.size() : "Index out of bounds for remove";
         int oldSize = tasks.size();
         Task t = tasks.remove(index1Based - 1);
         assert t != null : "Removed task must not be null";
+        unindex(t);
         assert tasks.size() == oldSize - 1 : "Size must decrease after remove";
         return t;
     }
 
+    /**
+     * Removes the tasks at the given positions in a single pass over the list.
+     *
+     * @param positions Distinct 1-based indexes in increasing order.
+     * @return Removed tasks, in list order.
+     */
+    public List<Task> removeAll(int[] positions) {
+        assert positions != null : "Positions must not be null";
+        long stamp = beginWrite();
+        try {
+            return removeAllLocked(positions);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private List<Task> removeAllLocked(int[] positions) {
+        int[] sorted = new int[positions.length];
+        List<Task> removed = new ArrayList<>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            assert positions[i] > 0 && positions[i] <= tasks.size() : "Index out of bounds for remove";
+            assert i == 0 || positions[i] > positions[i - 1] : "Positions must be increasing";
+            sorted[i] = positions[i] - 1;
+            removed.add(tasks.get(sorted[i]));
+        }
+        removePositions(tasks, sorted);
+        for (Task t : removed) {
+            unindex(t);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the task from the indexes. An index that is mostly tombstones is dropped,
+     * and the next query builds it again.
+     */
+    private void unindex(Task t) {
+        if (index != null) {
+            index.remove(t.getId());
+            if (index.isMostlyRemoved()) {
+                index = null;
+            }
+        }
+        if (dateIndex != null) {
+            dateIndex.remove(t.getId());
+            if (dateIndex.isMostlyRemoved()) {
+                dateIndex = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the elements at the given 0-based positions, which must be distinct and increasing,
+     * shifting every remaining element at most once.
+     */
+    static void removePositions(List<Task> list, int[] sorted) {
+        if (list instanceof TaskArray) {
+            ((TaskArray) list).removePositions(sorted);
+            return;
+        }
+        if (list instanceof MappedTaskList) {
+            ((MappedTaskList) list).removePositions(sorted);
+            return;
+        }
+        if (list instanceof ColumnarTaskList) {
+            ((ColumnarTaskList) list).removePositions(sorted);
+            return;
+        }
+        List<Task> kept = new ArrayList<>(list.size() - sorted.length);
+        int next = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (next < sorted.length && sorted[next] == i) {
+                next++;
+            } else {
+                kept.add(list.get(i));
+            }
+        }
+        list.clear();
+        list.addAll(kept);
+    }
+
+    /**
+     * Removes every task from the list.
+     */
+    public void clear() {
+        long stamp = beginWrite();
+        try {
+            tasks.clear();
+            if (index != null) {
+                index.clear();
+            }
+            if (dateIndex != null) {
+                dateIndex.clear();
+            }
+            assert tasks.isEmpty() : "Tasks list must be empty after clear";
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the tasks whose description contains the keyword, ignoring case, in list order.
+     * Keywords of three or more characters are answered from a trigram index,
+     * which is built on the first search and kept up to date afterwards.
+     *
+     * @param keyword Keyword to search for.
+     * @return Matching tasks.
+     */
+    public List<Task> find(String keyword) {
+        assert keyword != null : "Keyword must not be null";
+        String needle = keyword.toLowerCase();
+        if (needle.length() < KeywordIndex.GRAM) {
+            return read(() -> {
+                List<Task> result = new ArrayList<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    Task t = tasks.get(i);
+                    if (t.description.toLowerCase().contains(needle)) {
+                        result.add(t);
+                    }
+                }
+                return result;
+            });
+        }
+        long stamp = lock.readLock();
+        try {
+            if (index == null) {
+                stamp = toWriteLock(stamp);
+                if (index == null) {
+                    KeywordIndex built = new KeywordIndex();
+                    for (int i = 0; i < tasks.size(); i++) {
+                        built.add(tasks.get(i));
+                    }
+                    index = built;
+                }
+            }
+            return index.find(needle, this::taskWithId);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /** Upgrades a read stamp to a write stamp, waiting for other readers if it cannot be done in place. */
+    private long toWriteLock(long readStamp) {
+        long stamp = lock.tryConvertToWriteLock(readStamp);
+        if (stamp != 0) {
+            return stamp;
+        }
+        lock.unlockRead(readStamp);
+        return lock.writeLock(); // callers check again, since another thread may have won the race
+    }
+
+    /**
+     * Returns the deadlines due on the given date and the events spanning it, in list order.
+     * Answered from a date index, which is built on the first query and kept up to date afterwards.
+     *
+     * @param date Date to look up.
+     * @return Matching tasks.
+     */
+    public List<Task> on(LocalDate date) {
+        assert date != null : "Date must not be null";
+        long stamp = lock.readLock();
+        try {
+            if (dateIndex == null) {
+                stamp = toWriteLock(stamp);
+                if (dateIndex == null) {
+                    DateIndex built = new DateIndex();
+                    for (int i = 0; i < tasks.size(); i++) {
+                        built.add(tasks.get(i));
+                    }
+                    dateIndex = built;
+                }
+            }
+            return dateIndex.on(date, this::taskWithId);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
     /**
      * Marks the task as done.
      *
@@ -98,11 +533,18 @@ public class TaskList {
      * @return Task that was marked as done.
      */
     public Task mark(int index1Based) {
-        Task t = get(index1Based);
-        assert t != null : "Task to mark must not be null";
-        t.markAsDone();
-        assert t.isDone : "Task should be marked as done";
-        return t;
+        long stamp = beginWrite();
+        try {
+            assert index1Based > 0 && index1Based <= tasks.size() : "Index out of bounds";
+            Task t = tasks.get(index1Based - 1);
+            assert t != null : "Task to mark must not be null";
+            t.markAsDone();
+            tasks.set(index1Based - 1, t); // keeps the change if the list decodes tasks on demand
+            assert t.isDone : "Task should be marked as done";
+            return t;
+        } finally {
+            endWrite(stamp);
+        }
     }
 
     /**
@@ -112,11 +554,18 @@ public class TaskList {
      * @return Task that was marked as not done.
      */
     public Task unmark(int index1Based) {
-        Task t = get(index1Based);
-        assert t != null : "Task to unmark must not be null";
-        t.markAsNotDone();
-        assert !t.isDone : "Task should be marked as not done";
-        return t;
+        long stamp = beginWrite();
+        try {
+            assert index1Based > 0 && index1Based <= tasks.size() : "Index out of bounds";
+            Task t = tasks.get(index1Based - 1);
+            assert t != null : "Task to unmark must not be null";
+            t.markAsNotDone();
+            tasks.set(index1Based - 1, t);
+            assert !t.isDone : "Task should be marked as not done";
+            return t;
+        } finally {
+            endWrite(stamp);
+        }
     }
 
     /**
@@ -127,6 +576,10 @@ public class TaskList {
      */
     public String renderList() {
         assert tasks != null : "Tasks list must not be null";
+        return read(this::render);
+    }
+
+    private String render() {
         if (tasks.isEmpty()) {
             return "Your task list is empty.";
         }
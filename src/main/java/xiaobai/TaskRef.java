@@ -0,0 +1,46 @@
+package xiaobai;
+
+/**
+ * Refers to a task either by its 1-based position in the list or by its ID ("#<id>").
+ * A reference is resolved to a position when the command runs.
+ */
+final class TaskRef {
+    private final int position;
+    private final long id;
+
+    private TaskRef(int position, long id) {
+        this.position = position;
+        this.id = id;
+    }
+
+    static TaskRef ofPosition(int index1Based) {
+        assert index1Based > 0 : "Index must be positive";
+        return new TaskRef(index1Based, 0);
+    }
+
+    static TaskRef ofId(long id) {
+        assert id > 0 : "ID must be positive";
+        return new TaskRef(0, id);
+    }
+
+    /**
+     * Returns the current 1-based position of the task referred to.
+     *
+     * @param tasks Task list.
+     * @return 1-based index of the task.
+     * @throws InvalidIndexException If there is no such task.
+     */
+    int resolve(TaskList tasks) throws InvalidIndexException {
+        assert tasks != null : "TaskList must not be null";
+        int index = id > 0 ? tasks.indexOfId(id) : position;
+        if (index < 1 || index > tasks.size()) {
+            throw new InvalidIndexException();
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return id > 0 ? "#" + id : String.valueOf(position);
+    }
+}
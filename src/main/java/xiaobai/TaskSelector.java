@@ -0,0 +1,196 @@
+package xiaobai;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selects the tasks a bulk mark, unmark or delete applies to.
+ * A selection is either a comma-separated list of task numbers, "#<id>" references
+ * and ranges such as "10-5000", or a predicate: "done", "undone" or "before <date>".
+ * A dated task is before a date if its deadline, or the end of its event, falls on an earlier day.
+ */
+final class TaskSelector {
+    private enum Kind { LIST, DONE, UNDONE, BEFORE }
+
+    private final Kind kind;
+    private final List<TaskRef> refs;
+    private final int[] ranges; // pairs of 1-based from and to positions
+    private final LocalDate date;
+
+    private TaskSelector(Kind kind, List<TaskRef> refs, int[] ranges, LocalDate date) {
+        this.kind = kind;
+        this.refs = refs;
+        this.ranges = ranges;
+        this.date = date;
+    }
+
+    /** Returns a selection of the single task referred to. */
+    static TaskSelector of(TaskRef ref) {
+        assert ref != null : "Task reference must not be null";
+        return new TaskSelector(Kind.LIST, List.of(ref), new int[0], null);
+    }
+
+    /**
+     * Parses a selection.
+     *
+     * @param s Selection text.
+     * @param cmdName Command name, used in the usage hint.
+     * @return Parsed selection.
+     * @throws XiaoBaiException If the selection is invalid.
+     */
+    static TaskSelector parse(String s, String cmdName) throws XiaoBaiException {
+        assert s != null : "Selection must not be null";
+        assert cmdName != null : "Command name must not be null";
+        String t = s.trim();
+        if (t.equals("done")) {
+            return new TaskSelector(Kind.DONE, List.of(), new int[0], null);
+        }
+        if (t.equals("undone")) {
+            return new TaskSelector(Kind.UNDONE, List.of(), new int[0], null);
+        }
+        if (t.startsWith("before ")) {
+            return new TaskSelector(Kind.BEFORE, List.of(), new int[0], DateTimeUtil.parseDate(t.substring(7)));
+        }
+
+        List<TaskRef> refs = new ArrayList<>();
+        IntList ranges = new IntList();
+        for (String item : t.split(",")) {
+            String p = item.trim();
+            int dash = p.indexOf('-');
+            if (dash < 0 || p.startsWith("#")) {
+                refs.add(parseRef(p, cmdName));
+                continue;
+            }
+            int from = parsePosition(p.substring(0, dash), cmdName);
+            int to = parsePosition(p.substring(dash + 1), cmdName);
+            if (from > to) {
+                throw new InvalidIndexException();
+            }
+            ranges.add(from);
+            ranges.add(to);
+        }
+        return new TaskSelector(Kind.LIST, refs, ranges.toArray(), null);
+    }
+
+    /** Returns true if this selects exactly one task by number or ID. */
+    boolean isSingle() {
+        return kind == Kind.LIST && refs.size() == 1 && ranges.length == 0;
+    }
+
+    /** Returns the single task reference; only valid if {@link #isSingle()}. */
+    TaskRef single() {
+        assert isSingle() : "Selection must be a single task";
+        return refs.get(0);
+    }
+
+    /**
+     * Returns the selected tasks as sorted, distinct 1-based positions.
+     *
+     * @param tasks Task list.
+     * @return Selected positions.
+     * @throws InvalidIndexException If a listed task number or ID does not exist.
+     */
+    int[] select(TaskList tasks) throws InvalidIndexException {
+        assert tasks != null : "TaskList must not be null";
+        IntList hits = new IntList();
+        if (kind == Kind.LIST) {
+            for (TaskRef ref : refs) {
+                hits.add(ref.resolve(tasks));
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i + 1] > tasks.size()) {
+                    throw new InvalidIndexException();
+                }
+                for (int p = ranges[i]; p <= ranges[i + 1]; p++) {
+                    hits.add(p);
+                }
+            }
+        } else {
+            List<Task> list = tasks.asList();
+            for (int i = 0; i < list.size(); i++) {
+                if (matches(list.get(i))) {
+                    hits.add(i + 1);
+                }
+            }
+        }
+
+        int[] positions = hits.toArray();
+        if (kind != Kind.LIST) {
+            return positions; // already in order
+        }
+        Arrays.sort(positions);
+        int n = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (n == 0 || positions[i] != positions[n - 1]) {
+                positions[n++] = positions[i];
+            }
+        }
+        return Arrays.copyOf(positions, n);
+    }
+
+    private boolean matches(Task t) {
+        switch (kind) {
+        case DONE:
+            return t.isDone;
+        case UNDONE:
+            return !t.isDone;
+        case BEFORE: {
+            LocalDateTime when;
+            if (t instanceof Deadline) {
+                when = ((Deadline) t).getBy();
+            } else if (t instanceof Event) {
+                when = ((Event) t).getEnd();
+            } else {
+                return false;
+            }
+            return when.toLocalDate().isBefore(date);
+        }
+        default:
+            return false;
+        }
+    }
+
+    private static TaskRef parseRef(String s, String cmdName) throws XiaoBaiException {
+        boolean isId = s.startsWith("#");
+        String digits = isId ? s.substring(1) : s;
+        long n = parseNumber(digits, cmdName);
+        if (isId) {
+            return TaskRef.ofId(n);
+        }
+        if (n > Integer.MAX_VALUE) {
+            throw new InvalidIndexException();
+        }
+        return TaskRef.ofPosition((int) n);
+    }
+
+    private static int parsePosition(String s, String cmdName) throws XiaoBaiException {
+        long n = parseNumber(s.trim(), cmdName);
+        if (n > Integer.MAX_VALUE) {
+            throw new InvalidIndexException();
+        }
+        return (int) n;
+    }
+
+    private static long parseNumber(String s, String cmdName) throws XiaoBaiException {
+        if (s.isEmpty()) {
+            throw new InvalidFormatException(usage(cmdName));
+        }
+        try {
+            long n = Long.parseLong(s);
+            if (n <= 0) {
+                throw new InvalidIndexException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new InvalidFormatException(usage(cmdName));
+        }
+    }
+
+    static String usage(String cmdName) {
+        return "Use: " + cmdName + " <task number|#id>, a list like 1,4,9, a range like 10-50, "
+                + "done, undone or before <date>";
+    }
+}
@@ -21,8 +21,8 @@ public class Todo extends Task {
      * @return Formatted string representation of the todo task.
      */
     @Override
-    public String toString() {
+    protected String render() {
         assert description != null : "Description must not be null before printing";
-        return "[T]" + super.toString();
+        return "[T]" + super.render();
     }
 }
@@ -1,15 +1,50 @@
 package xiaobai;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
- * Handles user interaction by printing messages, errors, and dividers to the console.
- * No longer useful in the latest version, but still kept here as a reference.
+ * Handles user interaction by printing messages, errors, and dividers.
+ * Output goes to the console unless another sink is given, so each request can have its own.
  */
 public class Ui {
+    private final Appendable out;
+
+    /**
+     * Creates a UI that prints to the console.
+     */
+    public Ui() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a UI that writes its output to the given sink.
+     *
+     * @param out Sink for all output.
+     */
+    public Ui(Appendable out) {
+        assert out != null : "Output sink must not be null";
+        this.out = out;
+    }
+
+    /**
+     * Writes one line of output to the sink.
+     *
+     * @param line Line of text.
+     */
+    protected void write(String line) {
+        try {
+            out.append(line).append(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Prints a horizontal divider line.
      */
     public void printLine() {
-        System.out.println("____________________________________________________________");
+        write("____________________________________________________________");
     }
 
     /**
@@ -22,11 +57,36 @@ public class Ui {
         printLine();
         for (String line : lines) {
             assert line != null : "Line must not be null";
-            System.out.println("" + line);
+            write(line);
         }
         printLine();
     }
 
+    /**
+     * Starts a box whose lines are printed one at a time with {@link #printBoxLine(String)},
+     * so long output never has to be built as one string.
+     */
+    public void beginBox() {
+        printLine();
+    }
+
+    /**
+     * Prints one line inside a box started with {@link #beginBox()}.
+     *
+     * @param line Line of text.
+     */
+    public void printBoxLine(String line) {
+        assert line != null : "Line must not be null";
+        write(line);
+    }
+
+    /**
+     * Ends a box started with {@link #beginBox()}.
+     */
+    public void endBox() {
+        printLine();
+    }
+
     /**
      * Prints an error message sandwiched by divider lines.
      *
@@ -35,7 +95,7 @@ public class Ui {
     public void printErrorBox(String msg) {
         assert msg != null : "Error message must not be null";
         printLine();
-        System.out.println(" " + msg);
+        write(" " + msg);
         printLine();
     }
 }
@@ -1,7 +1,7 @@
 package xiaobai;
 
 public class UnmarkCommand extends Command {
-    private final int index;
+    private final TaskSelector selector;
 
     /**
      * Creates an UnmarkCommand with the specified task index.
@@ -9,14 +9,23 @@ public class UnmarkCommand extends Command {
      * @param index Index of the task to unmark as done.
      */
     public UnmarkCommand(int index) {
-        assert index > 0 : "Index must be positive";
-        this.index = index;
+        this(TaskSelector.of(TaskRef.ofPosition(index)));
     }
 
     /**
-     * Unmarks the task at the given index as not done,
-     * prints confirmation to the user, and saves the updated task list.
-     * Throws XiaoBaiException if the index is out of bounds.
+     * Creates an UnmarkCommand for the selected tasks.
+     *
+     * @param selector Tasks to unmark.
+     */
+    UnmarkCommand(TaskSelector selector) {
+        assert selector != null : "Selector must not be null";
+        this.selector = selector;
+    }
+
+    /**
+     * Marks the selected tasks as not done,
+     * prints confirmation to the user, and saves the updated task list with a single write.
+     * Throws XiaoBaiException if a task number is out of bounds.
      *
      * @param tasks Task list.
      * @param ui User interface.
@@ -27,10 +36,24 @@ public class UnmarkCommand extends Command {
         assert tasks != null : "TaskList must not be null";
         assert ui != null : "Ui must not be null";
         assert storage != null : "Storage must not be null";
-        if (index < 1 || index > tasks.size()) throw new XiaoBaiException("(˙_˙) That task number is invalid.");
-        Task t = tasks.unmark(index);
-        assert t != null : "Unmarked task must not be null";
-        ui.printBoxed("OK, I've marked this task as not done yet:\n  " + t);
-        save(storage, tasks, ui);
+        if (selector.isSingle()) {
+            int index = selector.single().resolve(tasks);
+            Task t = tasks.unmark(index);
+            assert t != null : "Unmarked task must not be null";
+            ui.printBoxed("OK, I've marked this task as not done yet:\n  " + t);
+            save(storage, tasks, ui, Storage.unmarkEntry(index));
+            return;
+        }
+
+        int[] positions = selector.select(tasks);
+        if (positions.length == 0) {
+            ui.printBoxed("No tasks matched, so nothing was changed.");
+            return;
+        }
+        for (int index : positions) {
+            tasks.unmark(index);
+        }
+        ui.printBoxed("OK, I've marked " + positions.length + " tasks as not done yet.");
+        save(storage, tasks, ui, Storage.unmarkEntry(positions));
     }
 }
@@ -0,0 +1,35 @@
+package xiaobai;
+
+public class UseCommand extends Command {
+    private final String name;
+
+    /**
+     * Creates a UseCommand that switches to the named workspace.
+     *
+     * @param name Workspace name.
+     */
+    public UseCommand(String name) {
+        assert Workspaces.isValidName(name) : "Workspace name must be valid";
+        this.name = name;
+    }
+
+    @Override
+    public String getWorkspace() {
+        return name;
+    }
+
+    /**
+     * Tells the user which workspace is now in use.
+     * The switch itself is made by the caller before this runs, so the task list is the new workspace's.
+     *
+     * @param tasks Task list of the workspace switched to.
+     * @param ui User interface.
+     * @param storage Storage handler.
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        assert tasks != null : "TaskList must not be null";
+        assert ui != null : "Ui must not be null";
+        ui.printBoxed("Now using workspace \"" + name + "\".\nNow you have " + tasks.size() + " tasks in the list.");
+    }
+}
@@ -0,0 +1,380 @@
+package xiaobai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+
+/**
+ * Named task lists, each saved in its own file next to the default one.
+ * A workspace is loaded the first time it is used. Loaded workspaces are kept in
+ * least-recently-used order, and once their estimated size exceeds the heap budget,
+ * the least recently used ones are saved and dropped from memory until they are used again.
+ * Each {@link Session} has a workspace of its own, so one user switching does not move another.
+ * A session whose workspace was evicted gets it loaded again by its next command.
+ * Names that differ only in case are rejected, since their files would clash on
+ * case-insensitive file systems.
+ * Loading, saving and closing never happen under the lock: each workspace is loaded through
+ * a future of its own, so a slow load only holds up the sessions waiting for that workspace,
+ * and evicted workspaces are closed after the lock is released. A workspace that is loaded
+ * again while it is still being closed waits for the close, so it reads its latest saved state.
+ */
+class Workspaces {
+    /** Rough heap cost of one loaded task: the object, its description and its cached rendering. */
+    static final long BYTES_PER_TASK = 256;
+    /** Rough heap cost of one row of a {@link ColumnarTaskList}, with an unshared description. */
+    static final long BYTES_PER_COLUMNAR_TASK = 64;
+    /** Rough heap cost of one task in the find and on indexes, once they are built. */
+    static final long BYTES_PER_INDEXED_TASK = 128;
+    private static final int MAX_NAME_LENGTH = 32;
+
+    private final Path dir;
+    private final Path defaultFile;
+    private final String defaultName;
+    private final long budgetBytes;
+    private final long writeBehindMillis;
+    private final boolean isColumnar;
+    private final Storage.Format format;
+    private final boolean isLazy;
+    // Workspaces by name, in least-recently-used order; a future is done once its workspace is loaded.
+    private final Map<String, FutureTask<Workspace>> loaded = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+    private final Map<String, FutureTask<Void>> evicting = new HashMap<>(); // guarded by this
+
+    /**
+     * A loaded workspace.
+     */
+    static final class Workspace {
+        private final String name;
+        private final Storage storage;
+        private final TaskList tasks;
+
+        private Workspace(String name, Storage storage, TaskList tasks) {
+            this.name = name;
+            this.storage = storage;
+            this.tasks = tasks;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Storage getStorage() {
+            return storage;
+        }
+
+        TaskList getTasks() {
+            return tasks;
+        }
+    }
+
+    /**
+     * The workspace one user is working in: the console, the window, or one server connection.
+     */
+    static final class Session {
+        private volatile String workspace;
+
+        private Session(String workspace) {
+            this.workspace = workspace;
+        }
+
+        /** Returns the name of the session's workspace. */
+        String getWorkspace() {
+            return workspace;
+        }
+    }
+
+    /**
+     * Creates the workspaces and loads the default one.
+     *
+     * @param defaultFile File of the default workspace; other workspaces are saved next to it.
+     * @param budgetBytes Estimated heap the loaded workspaces may use before old ones are evicted.
+     * @param writeBehindMillis Write-behind quiet period given to each workspace's storage.
+     * @param isColumnar Whether workspaces keep their tasks in a {@link ColumnarTaskList}.
+     * @param ui User interface for load errors.
+     */
+    Workspaces(Path defaultFile, long budgetBytes, long writeBehindMillis, boolean isColumnar, Ui ui) {
+        this(defaultFile, budgetBytes, writeBehindMillis, isColumnar, Storage.Format.TEXT, false, ui);
+    }
+
+    /**
+     * Creates the workspaces and loads the default one, with the given snapshot format and loading mode.
+     *
+     * @param defaultFile File of the default workspace; other workspaces are saved next to it.
+     * @param budgetBytes Estimated heap the loaded workspaces may use before old ones are evicted.
+     * @param writeBehindMillis Write-behind quiet period given to each workspace's storage.
+     * @param isColumnar Whether workspaces keep their tasks in a {@link ColumnarTaskList}.
+     * @param format Format each workspace's storage writes snapshots in.
+     * @param isLazy Whether binary snapshots are memory-mapped rather than read in full.
+     * @param ui User interface for load errors.
+     */
+    Workspaces(Path defaultFile, long budgetBytes, long writeBehindMillis, boolean isColumnar,
+            Storage.Format format, boolean isLazy, Ui ui) {
+        assert defaultFile != null : "Default file must not be null";
+        assert format != null : "Format must not be null";
+        assert budgetBytes > 0 : "Heap budget must be positive";
+        this.dir = defaultFile.toAbsolutePath().getParent();
+        this.defaultFile = defaultFile;
+        String fileName = defaultFile.getFileName().toString();
+        this.defaultName = fileName.endsWith(".txt") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        this.budgetBytes = budgetBytes;
+        this.writeBehindMillis = writeBehindMillis;
+        this.isColumnar = isColumnar;
+        this.format = format;
+        this.isLazy = isLazy;
+        FutureTask<Workspace> first = new FutureTask<>(() -> load(defaultName, defaultFile, ui));
+        first.run();
+        loaded.put(defaultName, first);
+    }
+
+    /**
+     * Starts a session in the default workspace.
+     *
+     * @return New session.
+     */
+    Session newSession() {
+        return new Session(defaultName);
+    }
+
+    /**
+     * Returns whether the name can be used for a workspace:
+     * 1 to 32 letters, digits, underscores or hyphens.
+     *
+     * @param name Workspace name.
+     * @return Whether the name is valid.
+     */
+    static boolean isValidName(String name) {
+        if (name == null || name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean isAllowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-';
+            if (!isAllowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the session's workspace, loading it again if it was evicted.
+     * Never evicts, so it is safe to call while commands in other workspaces are running,
+     * and only waits for a load of this workspace, never for one of another.
+     *
+     * @param session Session.
+     * @param ui User interface for load errors.
+     * @return The session's workspace.
+     */
+    Workspace get(Session session, Ui ui) {
+        assert session != null : "Session must not be null";
+        FutureTask<Workspace> f;
+        synchronized (this) {
+            f = entry(session.workspace, ui);
+        }
+        return await(f);
+    }
+
+    /**
+     * Switches the session to the named workspace, loading it if it is not in memory,
+     * then evicts least recently used workspaces other than it while the budget is exceeded.
+     * Must not run alongside other commands, since they may be using an evicted workspace.
+     *
+     * @param session Session that switches.
+     * @param name Workspace name.
+     * @param ui User interface for load and save errors.
+     * @return The workspace now in use by the session.
+     * @throws XiaoBaiException If the name differs only in case from an existing workspace.
+     */
+    Workspace use(Session session, String name, Ui ui) throws XiaoBaiException {
+        assert session != null : "Session must not be null";
+        assert isValidName(name) : "Workspace name must be valid";
+        String savedClash = findSavedCaseClash(name); // lists the directory, so outside the lock
+        FutureTask<Workspace> f;
+        synchronized (this) {
+            if (!loaded.containsKey(name)) {
+                String clash = savedClash != null ? savedClash : findLoadedCaseClash(name);
+                if (clash != null) {
+                    throw new XiaoBaiException("( ˘･з･) Workspace \"" + name + "\" clashes with \"" + clash
+                            + "\". Names may not differ only in case.");
+                }
+            }
+            f = entry(name, ui);
+        }
+        Workspace w = await(f);
+        session.workspace = name;
+
+        Map<String, FutureTask<Void>> closes;
+        synchronized (this) {
+            closes = pickEvictions(w, ui);
+        }
+        for (FutureTask<Void> close : closes.values()) {
+            await(close);
+        }
+        synchronized (this) {
+            closes.forEach(evicting::remove);
+        }
+        return w;
+    }
+
+    /**
+     * Writes deferred changes of every loaded workspace and stops their background threads.
+     */
+    void closeAll() {
+        List<FutureTask<Void>> closes;
+        List<FutureTask<Workspace>> all;
+        synchronized (this) {
+            closes = new ArrayList<>(evicting.values());
+            all = new ArrayList<>(loaded.values());
+        }
+        for (FutureTask<Void> close : closes) {
+            await(close);
+        }
+        for (FutureTask<Workspace> f : all) {
+            await(f).storage.close();
+        }
+    }
+
+    /**
+     * Returns the future of the named workspace, adding one if the workspace is not loaded.
+     * Only touches the map; the workspace is loaded by the first {@link #await(FutureTask)} of the future.
+     */
+    private FutureTask<Workspace> entry(String name, Ui ui) {
+        assert Thread.holdsLock(this) : "Caller must hold the workspaces lock";
+        FutureTask<Workspace> f = loaded.get(name);
+        if (f == null) {
+            FutureTask<Void> closing = evicting.get(name);
+            f = new FutureTask<>(() -> {
+                if (closing != null) {
+                    await(closing); // evicted moments ago; its last changes must be on disk first
+                }
+                return load(name, fileOf(name), ui);
+            });
+            loaded.put(name, f);
+        }
+        return f;
+    }
+
+    /**
+     * Runs the task on this thread unless another thread already has, then waits for its result.
+     * Waits through interrupts, since callers cannot go on without the result, and keeps the interrupt.
+     */
+    private static <T> T await(FutureTask<T> task) {
+        task.run(); // does nothing if the task has already started
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Path fileOf(String name) {
+        return name.equals(defaultName) ? defaultFile : dir.resolve(name + ".txt");
+    }
+
+    /** Returns a loaded workspace name equal to the given one ignoring case, or null if there is none. */
+    private String findLoadedCaseClash(String name) {
+        assert Thread.holdsLock(this) : "Caller must hold the workspaces lock";
+        for (String other : loaded.keySet()) {
+            if (other.equalsIgnoreCase(name) && !other.equals(name)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /** Returns a saved workspace name equal to the given one ignoring case, or null if there is none. */
+    private String findSavedCaseClash(String name) {
+        if (defaultName.equalsIgnoreCase(name) && !defaultName.equals(name)) {
+            return defaultName;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.endsWith(".txt"))
+                    .map(f -> f.substring(0, f.length() - 4))
+                    .filter(other -> other.equalsIgnoreCase(name) && !other.equals(name))
+                    .findFirst()
+                    .orElse(null);
+        } catch (IOException e) {
+            return null; // nothing saved yet, so nothing to clash with
+        }
+    }
+
+    private Workspace load(String name, Path file, Ui ui) {
+        Storage storage = new Storage(file, true);
+        storage.setWriteBehind(writeBehindMillis);
+        storage.setColumnar(isColumnar);
+        storage.setFormat(format);
+        storage.setLazyLoading(isLazy);
+        TaskList tasks;
+        try {
+            tasks = new TaskList(storage.load(ui), storage.getLastId());
+        } catch (Exception e) {
+            ui.printErrorBox("(>_<) Failed to load tasks: " + e.getMessage());
+            tasks = new TaskList();
+        }
+        return new Workspace(name, storage, tasks);
+    }
+
+    /**
+     * Drops least recently used workspaces other than the kept one while the budget is exceeded,
+     * and returns the tasks that save and close them, for the caller to run once it has released the lock.
+     * Workspaces still being loaded are neither counted nor evicted.
+     */
+    private Map<String, FutureTask<Void>> pickEvictions(Workspace keep, Ui ui) {
+        assert Thread.holdsLock(this) : "Caller must hold the workspaces lock";
+        long used = 0;
+        for (FutureTask<Workspace> f : loaded.values()) {
+            used += f.isDone() ? estimateBytes(await(f)) : 0;
+        }
+        Map<String, FutureTask<Void>> closes = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, FutureTask<Workspace>>> it = loaded.entrySet().iterator(); // least recent first
+        while (used > budgetBytes && it.hasNext()) {
+            Map.Entry<String, FutureTask<Workspace>> e = it.next();
+            if (!e.getValue().isDone()) {
+                continue;
+            }
+            Workspace w = await(e.getValue());
+            if (w == keep) {
+                continue;
+            }
+            used -= estimateBytes(w);
+            it.remove();
+            FutureTask<Void> close = new FutureTask<>(() -> {
+                w.storage.flush(ui);
+                w.storage.close();
+                return null;
+            });
+            evicting.put(e.getKey(), close);
+            closes.put(e.getKey(), close);
+        }
+        return closes;
+    }
+
+    private long estimateBytes(Workspace w) {
+        long perTask = isColumnar ? BYTES_PER_COLUMNAR_TASK : BYTES_PER_TASK;
+        if (w.tasks.isIndexed()) {
+            perTask += BYTES_PER_INDEXED_TASK;
+        }
+        return w.tasks.size() * perTask;
+    }
+}
@@ -1,35 +1,62 @@
 package xiaobai;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Entry point of the XiaoBai task management program.
  * Handles initialization, user interaction loop, and command execution.
  */
 public class XiaoBai {
+    private static final long WRITE_BEHIND_MILLIS = 200;
+    private static final long MB = 1024 * 1024;
 
-    private final Storage storage;
-    private TaskList tasks;
+    private final Workspaces workspaces;
+    private final Workspaces.Session session; // shared by the console and the window
     private final Ui ui;
+    private final ReadWriteLock commandLock = new ReentrantReadWriteLock();
 
     /**
      * Creates a XiaoBai instance with the given file path for task storage.
      * Loads tasks from disk, or initializes an empty task list if loading fails.
+     * Other workspaces are saved next to the file. Loaded workspaces may use an estimated
+     * quarter of the maximum heap, or as many megabytes as the system property
+     * "xiaobai.workspaceBudgetMb" gives, before the least recently used ones are evicted.
+     * Setting the system property "xiaobai.columnar" to true keeps tasks in compact columns,
+     * which suits large archival lists. Setting "xiaobai.format" to "binary" saves tasks in the
+     * compact binary format, and setting "xiaobai.lazy" to true memory-maps binary files on load,
+     * decoding tasks only when they are used.
      *
      * @param filePath Path to the storage file.
      */
     public XiaoBai(String filePath) {
         this.ui = new Ui();
-        this.storage = new Storage(filePath);
-        try {
-            this.tasks = new TaskList(storage.load(ui));
-        } catch (Exception e) {
-            ui.printErrorBox("(>_<) Failed to load tasks: " + e.getMessage());
-            this.tasks = new TaskList();
-        }
+        long budgetMb = Long.getLong("xiaobai.workspaceBudgetMb", Runtime.getRuntime().maxMemory() / 4 / MB);
+        Storage.Format format = "binary".equalsIgnoreCase(System.getProperty("xiaobai.format"))
+                ? Storage.Format.BINARY : Storage.Format.TEXT;
+        this.workspaces = new Workspaces(Paths.get(filePath), Math.max(budgetMb, 1) * MB, WRITE_BEHIND_MILLIS,
+                Boolean.getBoolean("xiaobai.columnar"), format, Boolean.getBoolean("xiaobai.lazy"), ui);
+        this.session = workspaces.newSession();
+    }
+
+    /**
+     * Starts a session of its own in the default workspace, for a user who should not
+     * follow the workspace switches of others, such as a server connection.
+     *
+     * @return New session.
+     */
+    Workspaces.Session newSession() {
+        return workspaces.newSession();
+    }
+
+    /** Switches the session's workspace first if the command asks for it, and returns the workspace to run in. */
+    private Workspaces.Workspace workspaceFor(Command c, Workspaces.Session s, Ui out) throws XiaoBaiException {
+        String name = c.getWorkspace();
+        return name == null ? workspaces.get(s, out) : workspaces.use(s, name, out);
     }
 
     /**
@@ -38,6 +65,7 @@ public class XiaoBai {
      * Terminates if exit command is given.
      */
     public void run() {
+        shutdownOnExit();
         Scanner scanner = new Scanner(System.in);
 
         String logo_text = "\n__  __ ___    _    ___   ____    _    ___\n"
@@ -58,62 +86,156 @@ public class XiaoBai {
             String fullCommand = scanner.nextLine();
             try {
                 Command c = Parser.parse(fullCommand);
-                c.execute(tasks, ui, storage);
+                Workspaces.Workspace w = workspaceFor(c, session, ui);
+                c.execute(w.getTasks(), ui, w.getStorage());
                 isExit = c.isExit();
             } catch (XiaoBaiException xe) {
                 ui.printErrorBox(xe.getMessage());
             }
         }
+        shutdown();
     }
 
-    public String getResponse(String input) {
-        PrintStream oldOut = System.out;
-        PrintStream oldErr = System.err;
+    /**
+     * Runs the commands in the given script file with a single save at the end,
+     * prints a summary, and shuts down.
+     *
+     * @param file Path of the script file.
+     */
+    public void runBatch(String file) {
+        assert file != null : "File must not be null";
+        shutdownOnExit();
+        try {
+            Workspaces.Workspace w = workspaces.get(session, ui);
+            new SourceCommand(file).execute(w.getTasks(), ui, w.getStorage());
+        } catch (XiaoBaiException xe) {
+            ui.printErrorBox(xe.getMessage());
+        }
+        shutdown();
+    }
+
+    /**
+     * Serves the task list to clients on the given local port until the process is stopped.
+     * Deferred changes are written when it stops.
+     *
+     * @param port Port to listen on.
+     */
+    public void runServer(int port) {
+        Server server;
+        try {
+            server = new Server(this, port);
+        } catch (IOException e) {
+            ui.printErrorBox("(>_<) Failed to listen on port " + port + ": " + e.getMessage());
+            shutdown();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            shutdown();
+        }, "xiaobai-shutdown"));
+        ui.printBoxed(" XiaoBai is listening on 127.0.0.1:" + server.getPort());
+        try {
+            server.run();
+        } catch (IOException e) {
+            ui.printErrorBox("(>_<) Server stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the task list of the workspace the console and the window are using.
+     *
+     * @return Task list.
+     */
+    public TaskList getTasks() {
+        return workspaces.get(session, ui).getTasks();
+    }
+
+    /**
+     * Makes the process write deferred changes when it is stopped, for example by Ctrl-C,
+     * since with write-behind a change the user was already told about may not be on disk yet.
+     */
+    void shutdownOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "xiaobai-shutdown"));
+    }
 
-        ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-        ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-        PrintStream capOut = new PrintStream(outBuf, true, StandardCharsets.UTF_8);
-        PrintStream capErr = new PrintStream(errBuf, true, StandardCharsets.UTF_8);
+    /**
+     * Writes deferred changes of every loaded workspace and waits for pending background storage work to finish.
+     * Safe to call more than once.
+     */
+    public void shutdown() {
+        workspaces.closeAll();
+    }
 
-        System.setOut(capOut);
-        System.setErr(capErr);
+    /**
+     * Runs one command in the workspace of the console and the window, and returns what it printed.
+     *
+     * @param input Command typed by the user.
+     * @return Response text.
+     */
+    public String getResponse(String input) {
+        return getResponse(input, session);
+    }
 
-        String uiText = "";
+    /**
+     * Runs one command in the session's workspace and returns what it printed.
+     * Output is collected in a UI of its own, so nothing global is redirected.
+     * Safe to call from several threads: read-only commands run side by side,
+     * while a command that changes the list or switches workspace runs on its own.
+     *
+     * @param input Command typed by the user.
+     * @param s Session the command belongs to.
+     * @return Response text.
+     */
+    String getResponse(String input, Workspaces.Session s) {
+        assert s != null : "Session must not be null";
+        String reply;
         try {
             Command c = Parser.parse(input);
-
             GuiUi guiUi = new GuiUi();
-            c.execute(tasks, guiUi, storage);
-            uiText = guiUi.getText();
-
+            Lock held = c.isReadOnly() ? commandLock.readLock() : commandLock.writeLock();
+            held.lock();
+            try {
+                Workspaces.Workspace w = workspaceFor(c, s, guiUi);
+                c.execute(w.getTasks(), guiUi, w.getStorage());
+            } finally {
+                held.unlock();
+            }
+            reply = guiUi.getText();
         } catch (XiaoBaiException xe) {
-            uiText = xe.getMessage();
+            reply = xe.getMessage();
         } catch (Exception e) {
-            uiText = "☹ OOPS!!! " + (e.getMessage() == null ? e.toString() : e.getMessage());
-        } finally {
-            System.setOut(oldOut);
-            System.setErr(oldErr);
-        }
-
-        String printed = outBuf.toString(StandardCharsets.UTF_8);
-        String printedErr = errBuf.toString(StandardCharsets.UTF_8);
-
-        StringBuilder reply = new StringBuilder();
-        if (uiText != null && !uiText.isBlank()) reply.append(uiText.trim());
-        if (!printed.isBlank()) {
-            if (reply.length() > 0) reply.append(System.lineSeparator());
-            reply.append(printed.trim());
-        }
-        if (!printedErr.isBlank()) {
-            if (reply.length() > 0) reply.append(System.lineSeparator());
-            reply.append(printedErr.trim());
+            reply = "☹ OOPS!!! " + (e.getMessage() == null ? e.toString() : e.getMessage());
         }
-
-        String result = reply.toString();
-        return result.isBlank() ? "(no output)" : result;
+        return reply == null || reply.isBlank() ? "(no output)" : reply.trim();
     }
 
+    /**
+     * Starts the text UI. With "--batch <file>", runs the commands in the file and exits;
+     * with "--server [port]", serves the task list over a local TCP port instead.
+     *
+     * @param args Command line arguments.
+     */
     public static void main(String[] args) {
-        new XiaoBai("data/xiaobai.txt").run();
+        XiaoBai xiaoBai = new XiaoBai("data/xiaobai.txt");
+        if (args.length == 2 && args[0].equals("--batch")) {
+            xiaoBai.runBatch(args[1]);
+        } else if (args.length >= 1 && args.length <= 2 && args[0].equals("--server")) {
+            int port = Server.DEFAULT_PORT;
+            if (args.length == 2) {
+                try {
+                    port = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    port = -1;
+                }
+            }
+            if (port < 0 || port > 0xFFFF) {
+                xiaoBai.ui.printErrorBox("( ˘･з･) Invalid port: " + args[1]);
+                xiaoBai.shutdown();
+                return;
+            }
+            xiaoBai.runServer(port);
+        } else {
+            xiaoBai.run();
+        }
     }
 }
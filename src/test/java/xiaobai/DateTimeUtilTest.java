@@ -0,0 +1,37 @@
+package xiaobai;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DateTimeUtilTest {
+
+    @Test
+    public void testParseIsoAndDmyForms() throws Exception {
+        LocalDateTime expected = LocalDateTime.of(2025, 9, 5, 12, 0);
+        assertEquals(expected, DateTimeUtil.parseDateTimeLenient("2025-09-05 1200"));
+        assertEquals(expected, DateTimeUtil.parseDateTimeLenient("2025-09-05  12:00"));
+        assertEquals(expected, DateTimeUtil.parseDateTimeLenient("5/9/2025 1200"));
+        assertEquals(expected, DateTimeUtil.parseDateTimeLenient("05/09/2025 12:00"));
+        assertEquals(expected.toLocalDate().atStartOfDay(), DateTimeUtil.parseDateTimeLenient("2025-09-05"));
+        assertEquals(expected, DateTimeUtil.fromIso("2025-09-05T12:00"));
+    }
+
+    @Test
+    public void testParseRejectsInvalidValues() {
+        assertThrows(XiaoBaiException.class, () -> DateTimeUtil.parseDateTimeLenient("2025-02-29"));
+        assertThrows(XiaoBaiException.class, () -> DateTimeUtil.parseDateTimeLenient("2025-09-05 2400"));
+        assertThrows(XiaoBaiException.class, () -> DateTimeUtil.parseDateTimeLenient("9:30"));
+        assertThrows(XiaoBaiException.class, () -> DateTimeUtil.parseDateTimeLenient("20250-01-01"));
+    }
+
+    @Test
+    public void testParseTomorrowKeepsTime() throws Exception {
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        assertEquals(tomorrow.atTime(14, 0), DateTimeUtil.parseDateTimeLenient("tomorrow 1400"));
+        assertEquals(tomorrow.atTime(9, 30), DateTimeUtil.parseDateTimeLenient("tmr 09:30"));
+    }
+}
@@ -0,0 +1,93 @@
+package xiaobai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javafx.collections.ListChangeListener;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObservableTaskListTest {
+    private AtomicReference<TaskList> current;
+    private ObservableTaskList view;
+    private List<String> changes;
+
+    @BeforeEach
+    public void setUp() {
+        current = new AtomicReference<>(new TaskList());
+        view = new ObservableTaskList(current::get);
+        changes = new ArrayList<>();
+        // Only javafx-base is used, so no stage or toolkit is needed.
+        view.addListener((ListChangeListener<Task>) c -> {
+            while (c.next()) {
+                changes.add(c.getFrom() + "-" + c.getTo() + " removed " + c.getRemovedSize()
+                        + " added " + c.getAddedSize() + " size " + c.getList().size());
+            }
+        });
+    }
+
+    @Test
+    public void testAddIsSeenOnRefresh() {
+        current.get().add(new Todo("read book"));
+        current.get().add(new Todo("return book"));
+        assertEquals(0, view.size(), "The size only changes on refresh");
+        assertTrue(changes.isEmpty());
+
+        view.refresh();
+        assertEquals(List.of("0-2 removed 0 added 2 size 2"), changes);
+        assertEquals("[T][ ] return book", view.get(1).toString());
+    }
+
+    @Test
+    public void testMarkReplacesRows() {
+        current.get().add(new Todo("read book"));
+        view.refresh();
+        changes.clear();
+
+        current.get().mark(1);
+        view.refresh();
+        assertEquals(List.of("0-1 removed 1 added 1 size 1"), changes);
+        assertEquals("[T][X] read book", view.get(0).toString());
+    }
+
+    @Test
+    public void testDeleteShrinksOnRefresh() {
+        for (int i = 1; i <= 3; i++) {
+            current.get().add(new Todo("task " + i));
+        }
+        view.refresh();
+        changes.clear();
+
+        current.get().remove(3);
+        assertEquals(3, view.size());
+        assertNull(view.get(2), "A row past the end of the shrunken list is blank until the refresh");
+        view.refresh();
+        assertEquals(List.of("0-2 removed 3 added 2 size 2"), changes);
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(2));
+
+        current.get().remove(1);
+        current.get().remove(1);
+        view.refresh();
+        changes.clear();
+        view.refresh();
+        assertTrue(changes.isEmpty(), "Nothing is fired while the list stays empty");
+    }
+
+    @Test
+    public void testSwappedListIsRead() {
+        current.get().add(new Todo("read book"));
+        view.refresh();
+        TaskList other = new TaskList();
+        other.add(new Todo("write report"));
+        other.add(new Todo("send report"));
+        current.set(other);
+
+        view.refresh();
+        assertEquals(2, view.size());
+        assertEquals("[T][ ] write report", view.get(0).toString());
+    }
+}
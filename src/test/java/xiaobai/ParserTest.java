@@ -35,4 +35,44 @@ public class ParserTest {
             Parser.parse("nonsense command");
         }, "Expected XiaoBaiException for invalid input");
     }
+
+    @Test
+    public void testParseMarkerNeedsSurroundingSpaces() {
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("deadline submit/by 2025-09-01"));
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("deadline submit /by"));
+        assertThrows(EmptyDescriptionException.class, () -> Parser.parse("deadline  /by 2025-09-01"));
+        assertThrows(InvalidFormatException.class,
+                () -> Parser.parse("event meeting /to 2025-09-02 16:00 /from 2025-09-02 14:00"));
+    }
+
+    @Test
+    public void testParseCommandWordMustStandAlone() {
+        assertThrows(UnknownCommandException.class, () -> Parser.parse("todoread book"));
+        assertThrows(UnknownCommandException.class, () -> Parser.parse("bye now"));
+        assertThrows(UnknownCommandException.class, () -> Parser.parse("mark"));
+    }
+
+    @Test
+    public void testParseStatsCommand() throws Exception {
+        Command command = Parser.parse("stats");
+        assertTrue(command instanceof StatsCommand, "Expected StatsCommand");
+        assertTrue(command.isReadOnly());
+        assertThrows(UnknownCommandException.class, () -> Parser.parse("stats now"));
+    }
+
+    @Test
+    public void testParseListPaging() throws Exception {
+        assertTrue(Parser.parse("list 3 --page-size 50") instanceof ListCommand);
+        assertTrue(Parser.parse("list --page-size 50") instanceof ListCommand);
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("list all"));
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("list 0"));
+    }
+
+    @Test
+    public void testParseUseWorkspace() throws Exception {
+        assertEquals("work", Parser.parse("use work").getWorkspace());
+        assertNull(Parser.parse("list").getWorkspace());
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("use ../work"));
+        assertThrows(InvalidFormatException.class, () -> Parser.parse("use"));
+    }
 }
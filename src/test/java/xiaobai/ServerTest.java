@@ -0,0 +1,95 @@
+package xiaobai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTripClosesOnlyOnExitCommand() throws Exception {
+        XiaoBai xiaoBai = new XiaoBai(tempDir.resolve("xiaobai.txt").toString());
+        Server server = new Server(xiaoBai, 0);
+        Thread accepter = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                // the test fails on the client side
+            }
+        });
+        accepter.setDaemon(true);
+        accepter.start();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+            assertTrue(send(out, in, "todo read book").contains("read book"));
+            assertFalse(send(out, in, "BYE").isEmpty(), "Input that does not parse gets an error back");
+            assertTrue(send(out, in, "list").contains("read book"), "The connection must stay open after BYE");
+            send(out, in, "bye");
+            assertNull(in.readLine(), "The connection must close after bye");
+        } finally {
+            server.close();
+            xiaoBai.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseDropsOpenConnections() throws Exception {
+        XiaoBai xiaoBai = new XiaoBai(tempDir.resolve("xiaobai.txt").toString());
+        Server server = new Server(xiaoBai, 0);
+        Thread accepter = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                // the test fails on the client side
+            }
+        });
+        accepter.setDaemon(true);
+        accepter.start();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+            assertTrue(send(out, in, "todo read book").contains("read book"));
+            server.close();
+            assertNull(in.readLine(), "close() must drop a client that is waiting to send a command");
+        } finally {
+            server.close();
+            xiaoBai.shutdown();
+        }
+    }
+
+    /** Sends one command and returns its response, up to the empty line that ends it. */
+    private static String send(Writer out, BufferedReader in, String command) throws IOException {
+        out.write(command + "\n");
+        out.flush();
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            response.append(line).append('\n');
+        }
+        assertNotNull(line, "The connection closed before the response to " + command + " ended");
+        return response.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package xiaobai;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SourceCommandTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testScriptSourcingItselfIsReported() throws Exception {
+        Path script = tempDir.resolve("loop.txt");
+        Files.write(script, List.of("todo read book", "source " + script));
+        StringBuilder out = new StringBuilder();
+        TaskList tasks = new TaskList();
+
+        new SourceCommand(script.toString()).execute(tasks, new Ui(out), new Storage(tempDir.resolve("tasks.txt")));
+
+        assertEquals(1, tasks.size());
+        assertTrue(out.toString().contains("1 succeeded, 1 failed"), out.toString());
+        assertTrue(out.toString().contains("already being run"), out.toString());
+    }
+
+    @Test
+    public void testScriptsSourcingEachOtherAreReported() throws Exception {
+        Path first = tempDir.resolve("first.txt");
+        Path second = tempDir.resolve("second.txt");
+        Files.write(first, List.of("todo from first", "source " + second));
+        Files.write(second, List.of("todo from second", "source " + tempDir.resolve(".").resolve("first.txt")));
+        TaskList tasks = new TaskList();
+        Storage storage = new Storage(tempDir.resolve("tasks.txt"));
+
+        new SourceCommand(first.toString()).execute(tasks, new Ui(new StringBuilder()), storage);
+        assertEquals(2, tasks.size());
+
+        // The same script may run again once the earlier run has finished.
+        new SourceCommand(second.toString()).execute(tasks, new Ui(new StringBuilder()), storage);
+        assertEquals(4, tasks.size());
+    }
+}
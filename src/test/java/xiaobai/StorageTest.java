@@ -0,0 +1,406 @@
+package xiaobai;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testJournalReplayedOnLoad() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        TaskList tasks = new TaskList();
+
+        tasks.add(new Todo("Read book"));
+        storage.append(Storage.addEntry(tasks.get(1)), tasks.asList(), null);
+        tasks.add(new Todo("Return book"));
+        storage.append(Storage.addEntry(tasks.get(2)), tasks.asList(), null);
+        tasks.mark(2);
+        storage.append(Storage.markEntry(2), tasks.asList(), null);
+        tasks.remove(1);
+        storage.append(Storage.deleteEntry(1), tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(1, loaded.size());
+        assertEquals("[T][X] Return book", loaded.get(0).toString());
+    }
+
+    @Test
+    public void testSaveDiscardsJournal() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        TaskList tasks = new TaskList();
+
+        tasks.add(new Todo("Read book"));
+        storage.append(Storage.addEntry(tasks.get(1)), tasks.asList(), null);
+        storage.save(tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(1, loaded.size(), "Snapshot and journal must not both be applied");
+    }
+
+    @Test
+    public void testCompactionKeepsEveryMutation() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        storage.setCompactionThreshold(2, 1L << 20);
+        TaskList tasks = new TaskList();
+
+        for (int i = 1; i <= 10; i++) {
+            tasks.add(new Todo("Task " + i));
+            storage.append(Storage.addEntry(tasks.get(i)), tasks.asList(), null);
+        }
+        tasks.mark(4);
+        storage.append(Storage.markEntry(4), tasks.asList(), null);
+        storage.close();
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(10, loaded.size());
+        assertEquals("[T][X] Task 4", loaded.get(3).toString());
+        assertEquals("[T][ ] Task 10", loaded.get(9).toString());
+    }
+
+    @Test
+    public void testCompactionNeverOverwritesLaterSave() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        storage.setCompactionThreshold(1, 1L << 20);
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 100_000; i++) {
+            tasks.add(new Todo("Task " + i));
+        }
+        storage.append(Storage.addEntry(tasks.get(100_000)), tasks.asList(), null); // starts a compaction
+
+        storage.beginBatch();
+        tasks.clear();
+        storage.append(Storage.clearEntry(), tasks.asList(), null);
+        tasks.add(new Todo("Only task"));
+        storage.append(Storage.addEntry(tasks.get(1)), tasks.asList(), null);
+        storage.endBatch(tasks.asList(), null);
+        storage.close();
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(1, loaded.size(), "The batch saved after the compaction started must win");
+        assertEquals("[T][ ] Only task", loaded.get(0).toString());
+    }
+
+    @Test
+    public void testWriteBehindFlushesOnRequest() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        storage.setWriteBehind(60_000);
+        TaskList tasks = new TaskList();
+
+        for (int i = 1; i <= 3; i++) {
+            tasks.add(new Todo("Task " + i));
+            storage.append(Storage.addEntry(tasks.get(i)), tasks.asList(), null);
+        }
+        storage.flush(null);
+
+        assertEquals(3, new Storage(file, true).load(null).size());
+        storage.close();
+    }
+
+    @Test
+    public void testBinaryFormatRoundTrip() throws XiaoBaiException {
+        Path file = tempDir.resolve("tasks.bin");
+        Storage storage = new Storage(file);
+        storage.setFormat(Storage.Format.BINARY);
+        TaskList tasks = new TaskList();
+        tasks.add(new Todo("Read book"));
+        tasks.add(new Deadline("Submit report", "2025-09-01 18:00"));
+        tasks.add(new Event("Meeting", "2025-09-02 14:00", "2025-09-02 15:00"));
+        tasks.mark(2);
+        storage.save(tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file).load(null);
+        assertEquals(3, loaded.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(tasks.get(i + 1).toString(), loaded.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testLazyLoadingKeepsMutations() {
+        Path file = tempDir.resolve("tasks.bin");
+        Storage storage = new Storage(file);
+        storage.setFormat(Storage.Format.BINARY);
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 5; i++) {
+            tasks.add(new Todo("Task " + i));
+        }
+        storage.save(tasks.asList(), null);
+
+        Storage lazy = new Storage(file);
+        lazy.setLazyLoading(true);
+        TaskList loaded = new TaskList(lazy.load(null));
+        loaded.mark(3);
+        loaded.remove(1);
+        loaded.add(new Todo("Task 6"));
+
+        assertEquals(5, loaded.size());
+        assertEquals("[T][X] Task 3", loaded.get(2).toString());
+        assertEquals("[T][ ] Task 6", loaded.get(5).toString());
+    }
+
+    @Test
+    public void testLazyListSurvivesIndexAndOverlayCompaction() {
+        Path file = tempDir.resolve("tasks.bin");
+        Storage storage = new Storage(file);
+        storage.setFormat(Storage.Format.BINARY);
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 20; i++) {
+            tasks.add(new Todo("Task " + i));
+        }
+        storage.save(tasks.asList(), null);
+
+        Storage lazy = new Storage(file);
+        lazy.setLazyLoading(true);
+        TaskList loaded = new TaskList(lazy.load(null));
+        assertEquals(20, loaded.find("task").size());
+        for (int i = 1; i <= 20; i++) {
+            loaded.mark(i);
+        }
+        for (int i = 0; i < 15; i++) {
+            loaded.remove(1);
+        }
+        loaded.unmark(2);
+
+        assertEquals(5, loaded.size());
+        assertEquals("[T][X] Task 16", loaded.get(1).toString());
+        assertEquals("[T][ ] Task 17", loaded.get(2).toString());
+        assertEquals(17, loaded.get(2).getId());
+        assertEquals(5, loaded.find("task").size());
+        assertEquals(1, loaded.indexOfId(16));
+    }
+
+    @Test
+    public void testLazyListIsCompactedFromItsRecords() {
+        Path file = tempDir.resolve("tasks.bin");
+        Storage storage = new Storage(file, true);
+        storage.setFormat(Storage.Format.BINARY);
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 1000; i++) {
+            tasks.add(new Deadline("Task " + i, LocalDateTime.of(2025, 1, 1, 9, 0).plusDays(i)));
+        }
+        storage.save(tasks.asList(), null);
+
+        Storage lazy = new Storage(file, true);
+        lazy.setFormat(Storage.Format.BINARY);
+        lazy.setLazyLoading(true);
+        lazy.setCompactionThreshold(2, 1L << 20);
+        TaskList loaded = new TaskList(lazy.load(null), lazy.getLastId());
+        loaded.mark(500);
+        lazy.append(Storage.markEntry(500), loaded.writerView(), null);
+        loaded.remove(1);
+        lazy.append(Storage.deleteEntry(1), loaded.writerView(), null); // starts a compaction
+        loaded.add(new Todo("Task 1001"));
+        lazy.append(Storage.addEntry(loaded.get(1000)), loaded.writerView(), null);
+        lazy.close();
+
+        List<Task> reloaded = new Storage(file, true).load(null);
+        assertEquals(new TaskList(loaded.asList()).renderList(), new TaskList(reloaded).renderList());
+        assertEquals(1001, reloaded.get(999).getId());
+    }
+
+    @Test
+    public void testSnapshotSetAsideIsRestored() throws Exception {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file);
+        TaskList tasks = new TaskList();
+        tasks.add(new Todo("Read book"));
+        storage.save(tasks.asList(), null);
+        // As if the process died after moving a mapped snapshot aside, before renaming the new one in.
+        Files.move(file, tempDir.resolve("tasks.txt.123.mapped"));
+        Files.writeString(tempDir.resolve("tasks.txt.45.mapped"), "");
+        Files.setLastModifiedTime(tempDir.resolve("tasks.txt.45.mapped"),
+                FileTime.fromMillis(0));
+
+        List<Task> loaded = new Storage(file).load(null);
+        assertEquals(1, loaded.size());
+        assertEquals("[T][ ] Read book", loaded.get(0).toString());
+        assertFalse(Files.exists(tempDir.resolve("tasks.txt.45.mapped")), "Older set-aside files are deleted");
+    }
+
+    @Test
+    public void testBatchWritesOnceAtEnd() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        TaskList tasks = new TaskList();
+
+        storage.beginBatch();
+        for (int i = 1; i <= 5; i++) {
+            tasks.add(new Todo("Task " + i));
+            storage.append(Storage.addEntry(tasks.get(i)), tasks.asList(), null);
+        }
+        assertFalse(java.nio.file.Files.exists(file), "Nothing is written during a batch");
+        assertFalse(java.nio.file.Files.exists(tempDir.resolve("tasks.txt.journal")));
+        storage.endBatch(tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(5, loaded.size());
+    }
+
+    @Test
+    public void testBulkEntriesReplayedOnLoad() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file, true);
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 10; i++) {
+            tasks.add(new Todo("Task " + i));
+            storage.append(Storage.addEntry(tasks.get(i)), tasks.asList(), null);
+        }
+
+        int[] marked = { 1, 2, 3, 7 };
+        for (int index : marked) {
+            tasks.mark(index);
+        }
+        storage.append(Storage.markEntry(marked), tasks.asList(), null);
+        int[] deleted = { 2, 3, 4, 5, 9 };
+        tasks.removeAll(deleted);
+        storage.append(Storage.deleteEntry(deleted), tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file, true).load(null);
+        assertEquals(tasks.renderList(), new TaskList(loaded).renderList());
+        assertEquals("[T][X] Task 7", loaded.get(2).toString());
+    }
+
+    @Test
+    public void testParallelLoadSplitsOnLineStarts() throws Exception {
+        // 65568 lines of 64 bytes: past 4 MiB, so the file is split into 4, 8, 12 or 16 chunks,
+        // and since the line count divides by each of them, every split falls exactly on a line start.
+        int lineCount = 65_568;
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            long id = 3L * i + 1; // IDs with gaps, as left by deletes
+            String done = i % 5 == 0 ? "1" : "0";
+            String head = "#" + id + " | T | " + done + " | Task " + i + " ";
+            String description = ("Task " + i + " " + ".".repeat(63 - head.length())).trim();
+            text.append(head).append(".".repeat(63 - head.length())).append('\n');
+            expected.add(id + " [T][" + (done.equals("1") ? "X" : " ") + "] " + description);
+        }
+        Path file = tempDir.resolve("tasks.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        assertEquals(64L * lineCount, Files.size(file));
+
+        assertLoadedInOrder(expected, new Storage(file).load(null));
+    }
+
+    @Test
+    public void testParallelLoadSplitsInsideLines() throws Exception {
+        // Lines of uneven length with multi-byte characters, blank lines and a corrupted line,
+        // so chunk splits land inside lines and have to move to the next line start.
+        StringBuilder text = new StringBuilder("# seq 42\n");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            long id = i + 1;
+            String description = "读书 " + i + "x".repeat(i % 37);
+            if (i % 3 == 0) {
+                text.append('#').append(id).append(" | D | 0 | ").append(description).append(" | 2025-09-01T18:00\n");
+                expected.add(id + " " + new Deadline(description, DateTimeUtil.fromIso("2025-09-01T18:00")));
+            } else {
+                text.append('#').append(id).append(" | T | 1 | ").append(description).append('\n');
+                expected.add(id + " [T][X] " + description);
+            }
+            if (i % 1000 == 0) {
+                text.append('\n');
+            }
+            if (i == 15_000) {
+                text.append("#0 | T | 0 | corrupted\n");
+            }
+        }
+        Path file = tempDir.resolve("tasks.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        assertTrue(Files.size(file) > 1 << 20, "The file must be large enough to load in parallel");
+
+        StringBuilder out = new StringBuilder();
+        assertLoadedInOrder(expected, new Storage(file).load(new Ui(out)));
+        assertTrue(out.toString().contains("skipped: 1"), out.toString());
+    }
+
+    private static void assertLoadedInOrder(List<String> expected, List<Task> loaded) {
+        assertEquals(expected.size(), loaded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task t = loaded.get(i);
+            assertEquals(expected.get(i), t.getId() + " " + t, "Task " + (i + 1));
+        }
+    }
+
+    @Test
+    public void testDeletedIdsAreNotReusedAfterRestart() {
+        for (boolean isJournaling : new boolean[] { true, false }) {
+            for (Storage.Format format : Storage.Format.values()) {
+                Path file = tempDir.resolve("ids-" + isJournaling + "-" + format + ".txt");
+                Storage storage = new Storage(file, isJournaling);
+                storage.setFormat(format);
+                TaskList tasks = new TaskList();
+                tasks.add(new Todo("Read book"));
+                storage.append(Storage.addEntry(tasks.get(1)), tasks.asList(), null);
+                tasks.add(new Todo("Return book"));
+                storage.append(Storage.addEntry(tasks.get(2)), tasks.asList(), null);
+                tasks.remove(2);
+                storage.append(Storage.deleteEntry(2), tasks.asList(), null);
+
+                Storage reopened = new Storage(file, isJournaling);
+                TaskList loaded = new TaskList(reopened.load(null), reopened.getLastId());
+                loaded.add(new Todo("Buy milk"));
+                assertEquals(3, loaded.get(2).getId(), "ID 2 was deleted and must not be handed out again");
+            }
+        }
+    }
+
+    @Test
+    public void testLegacyFileKeepsIdsAcrossRestarts() throws Exception {
+        Path file = tempDir.resolve("tasks.txt");
+        Files.write(file, List.of("T | 0 | Read book", "T | 0 | Return book", "T | 1 | Buy milk"));
+        Storage storage = new Storage(file, true);
+        TaskList tasks = new TaskList(storage.load(null), storage.getLastId());
+        tasks.add(new Todo("Call mum"));
+        assertEquals(4, tasks.get(4).getId());
+        storage.append(Storage.addEntry(tasks.get(4)), tasks.asList(), null);
+        tasks.remove(1);
+        storage.append(Storage.deleteEntry(1), tasks.asList(), null);
+
+        for (int restart = 0; restart < 2; restart++) {
+            Storage reopened = new Storage(file, true);
+            TaskList loaded = new TaskList(reopened.load(null), reopened.getLastId());
+            assertEquals(3, loaded.indexOfId(4), "Restart " + restart);
+            assertEquals(2, loaded.get(1).getId(), "Restart " + restart);
+            assertEquals("[T][ ] Call mum", loaded.get(loaded.indexOfId(4)).toString());
+        }
+        assertTrue(Files.readAllLines(file).stream().anyMatch(line -> line.startsWith("#2 |")),
+                "The assigned IDs must be written back to the file");
+    }
+
+    @Test
+    public void testRepeatedDescriptionsShareOneString() {
+        Path file = tempDir.resolve("tasks.txt");
+        Storage storage = new Storage(file);
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 6; i++) {
+            tasks.add(new Todo(i % 2 == 0 ? "standup" : "review PRs"));
+        }
+        storage.save(tasks.asList(), null);
+
+        List<Task> loaded = new Storage(file).load(null);
+        assertEquals(6, loaded.size());
+        assertSame(loaded.get(0).description, loaded.get(2).description);
+        assertSame(loaded.get(1).description, loaded.get(5).description);
+        assertTrue(DescriptionPool.hitRate() > 0);
+        assertTrue(DescriptionPool.stats().contains("% of"));
+    }
+}
@@ -1,5 +1,7 @@
 package xiaobai;
 
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -44,4 +46,139 @@ public class TaskListTest {
         assertEquals("[E][ ] Meeting (from: Sep 2 2025 2:00PM to: Sep 2 2025 3:00PM)", removed.toString());
         assertEquals(2, taskList.size());
     }
+
+    @Test
+    public void testFindKeepsIndexInSync() {
+        assertEquals(1, taskList.find("book").size());
+        taskList.add(new Todo("Return book"));
+        assertEquals(2, taskList.find("BOOK").size());
+        taskList.remove(1);
+        assertEquals("[T][ ] Return book", taskList.find("book").get(0).toString());
+        taskList.clear();
+        assertTrue(taskList.find("book").isEmpty());
+    }
+
+    @Test
+    public void testOnKeepsDateIndexInSync() throws XiaoBaiException {
+        java.time.LocalDate day = java.time.LocalDate.of(2025, 9, 2);
+        assertEquals(1, taskList.on(day).size());
+        taskList.add(new Deadline("Pay fees", "2025-09-02 09:00"));
+        taskList.add(new Event("Camp", "2025-08-30 09:00", "2025-09-05 18:00"));
+        assertEquals(3, taskList.on(day).size());
+        taskList.remove(3);
+        assertEquals("[D][ ] Pay fees (by: Sep 2 2025 09:00)", taskList.on(day).get(0).toString());
+    }
+
+    @Test
+    public void testIdsSurviveDeletes() {
+        for (int i = 0; i < 100; i++) {
+            taskList.add(new Todo("Task " + i));
+        }
+        for (int i = 0; i < 60; i++) {
+            taskList.remove(2);
+        }
+        assertEquals(43, taskList.size());
+        assertEquals(1, taskList.indexOfId(1));
+        assertEquals(-1, taskList.indexOfId(2));
+        assertEquals(2, taskList.indexOfId(62));
+        assertEquals("[T][ ] Task 99", taskList.get(taskList.indexOfId(103)).toString());
+        taskList.add(new Todo("Next"));
+        assertEquals(104, taskList.get(44).getId());
+    }
+
+    @Test
+    public void testRenderedStringFollowsMarking() {
+        String before = taskList.get(2).toString();
+        assertSame(before, taskList.get(2).toString(), "Rendering should be cached");
+        taskList.mark(2);
+        assertTrue(taskList.get(2).toString().startsWith("[D][X]"));
+        taskList.unmark(2);
+        assertEquals(before, taskList.get(2).toString());
+    }
+
+    @Test
+    public void testAsListIsUnmodifiableSnapshot() {
+        List<Task> snapshot = taskList.asList();
+        assertSame(snapshot, taskList.asList(), "Unchanged list should share its snapshot");
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0));
+
+        taskList.mark(1);
+        assertNotSame(snapshot, taskList.asList(), "Marking should make a new snapshot");
+        assertEquals(3, snapshot.size());
+        assertEquals("[T][X] Read book", snapshot.get(0).toString(), "Elements should be the live tasks");
+        taskList.unmark(1);
+
+        taskList.remove(1);
+        taskList.add(new Todo("Return book"));
+        assertEquals(3, snapshot.size(), "Snapshot should not see later changes");
+        assertEquals("[T][ ] Read book", snapshot.get(0).toString());
+        assertEquals("[T][ ] Return book", taskList.asList().get(2).toString());
+    }
+
+    @Test
+    public void testColumnarListMatchesDefaultList() {
+        ColumnarTaskList columns = new ColumnarTaskList();
+        for (Task t : taskList.asList()) {
+            columns.add(t);
+        }
+        TaskList columnar = new TaskList(columns);
+        assertEquals(taskList.renderList(), columnar.renderList());
+
+        columnar.mark(3);
+        columnar.remove(1);
+        columnar.add(new Todo("Read book"));
+        assertTrue(columnar.get(2).toString().startsWith("[E][X] Meeting"), "Marking should survive in the columns");
+        assertEquals(4, columnar.get(3).getId(), "IDs should continue after the loaded ones");
+        assertEquals(1, columnar.find("read").size());
+    }
+
+    @Test
+    public void testColumnarPoolDropsRemovedDescriptions() {
+        ColumnarTaskList columns = new ColumnarTaskList();
+        for (int i = 0; i < 100; i++) {
+            columns.add(new Todo("task " + i));
+        }
+        columns.add(new Todo("task 0"));
+        assertEquals(100, columns.pooledDescriptions(), "Equal descriptions should be stored once");
+
+        columns.removePositions(new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        for (int i = 0; i < 40; i++) {
+            columns.remove(1);
+        }
+        columns.set(1, new Todo("renamed"));
+        columns.add(1, new Todo("inserted"));
+        assertTrue(columns.pooledDescriptions() < 100, "Unused descriptions should be dropped");
+        assertEquals("[T][ ] task 0", columns.get(0).toString());
+        assertEquals("[T][ ] inserted", columns.get(1).toString());
+        assertEquals("[T][ ] renamed", columns.get(2).toString());
+        assertEquals("[T][ ] task 52", columns.get(3).toString());
+        assertEquals("[T][ ] task 99", columns.get(50).toString());
+        assertEquals("[T][ ] task 0", columns.get(51).toString());
+
+        columns.remove(0);
+        columns.add(new Todo("task 99"));
+        assertEquals("[T][ ] task 0", columns.get(50).toString(), "A shared description should outlive one of its rows");
+        assertEquals("[T][ ] task 99", columns.get(51).toString());
+    }
+
+    @Test
+    public void testIndexesFollowColumnarList() {
+        ColumnarTaskList columns = new ColumnarTaskList();
+        for (Task t : taskList.asList()) {
+            columns.add(t);
+        }
+        TaskList columnar = new TaskList(columns);
+        java.time.LocalDate day = java.time.LocalDate.of(2025, 9, 2);
+        assertEquals(1, columnar.find("book").size());
+        assertEquals(1, columnar.on(day).size());
+
+        columnar.mark(1);
+        assertEquals("[T][X] Read book", columnar.find("book").get(0).toString(), "Found tasks should be read from the columns");
+        columnar.add(new Todo("Return book"));
+        columnar.remove(1);
+        assertEquals(1, columnar.find("book").size());
+        assertEquals("[T][ ] Return book", columnar.find("book").get(0).toString());
+        columnar.remove(2);
+        assertTrue(columnar.on(day).isEmpty());
+    }
 }
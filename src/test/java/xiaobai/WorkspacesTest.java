@@ -0,0 +1,90 @@
+package xiaobai;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkspacesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSessionsSwitchWorkspacesIndependently() {
+        XiaoBai xiaoBai = new XiaoBai(tempDir.resolve("xiaobai.txt").toString());
+        Workspaces.Session other = xiaoBai.newSession();
+        xiaoBai.getResponse("todo read book");
+        xiaoBai.getResponse("use work", other);
+        xiaoBai.getResponse("todo write report", other);
+
+        String list = xiaoBai.getResponse("list");
+        assertTrue(list.contains("read book"));
+        assertFalse(list.contains("write report"), "Another session's switch must not move this one");
+        assertTrue(xiaoBai.getResponse("delete 1").contains("read book"));
+        assertTrue(xiaoBai.getResponse("list", other).contains("write report"));
+        xiaoBai.shutdown();
+    }
+
+    @Test
+    public void testEvictedWorkspaceIsLoadedAgain() throws XiaoBaiException {
+        Ui ui = new Ui(new StringBuilder());
+        Workspaces workspaces = new Workspaces(tempDir.resolve("xiaobai.txt"), 1, 0, false, ui);
+        Workspaces.Session first = workspaces.newSession();
+        Workspaces.Session second = workspaces.newSession();
+        Workspaces.Workspace work = workspaces.use(first, "work", ui);
+        work.getTasks().add(new Todo("Write report"));
+        work.getStorage().save(work.getTasks().asList(), ui);
+
+        workspaces.use(second, "home", ui); // over budget, so "work" is evicted
+        Workspaces.Workspace reloaded = workspaces.get(first, ui);
+        assertNotSame(work, reloaded);
+        assertEquals(1, reloaded.getTasks().size());
+        workspaces.closeAll();
+    }
+
+    @Test
+    public void testNamesDifferingOnlyInCaseAreRejected() throws Exception {
+        Files.writeString(tempDir.resolve("Personal.txt"), "");
+        Ui ui = new Ui(new StringBuilder());
+        Workspaces workspaces = new Workspaces(tempDir.resolve("xiaobai.txt"), 1L << 30, 0, false, ui);
+        Workspaces.Session session = workspaces.newSession();
+        workspaces.use(session, "work", ui);
+
+        assertThrows(XiaoBaiException.class, () -> workspaces.use(session, "Work", ui));
+        assertThrows(XiaoBaiException.class, () -> workspaces.use(session, "personal", ui));
+        assertThrows(XiaoBaiException.class, () -> workspaces.use(session, "XiaoBai", ui));
+        assertEquals("work", session.getWorkspace(), "A rejected switch must leave the session where it was");
+        assertEquals("Personal", workspaces.use(session, "Personal", ui).getName());
+        workspaces.closeAll();
+    }
+
+    @Test
+    public void testConcurrentSwitchesLoadOnce() throws Exception {
+        Ui ui = new Ui(new StringBuilder());
+        Workspaces workspaces = new Workspaces(tempDir.resolve("xiaobai.txt"), 1L << 30, 0, false, ui);
+        Workspaces.Workspace[] seen = new Workspaces.Workspace[8];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            int n = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    seen[n] = workspaces.use(workspaces.newSession(), "work", ui);
+                } catch (XiaoBaiException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Workspaces.Workspace w : seen) {
+            assertSame(seen[0], w, "Every session must get the one loaded workspace");
+        }
+        workspaces.closeAll();
+    }
+}